@@ -70,6 +70,10 @@ public class BytecodeGenerator {
     emit2(mgenc, PUSH_FIELD, mgenc.getFieldIndex(fieldName));
   }
 
+  public void emitPUSHFIELD(final MethodGenerationContext mgenc, final byte fieldIndex) {
+    emit2(mgenc, PUSH_FIELD, fieldIndex);
+  }
+
   public void emitPUSHGLOBAL(final MethodGenerationContext mgenc, final SSymbol global) {
     emit2(mgenc, PUSH_GLOBAL, mgenc.findLiteralIndex(global));
   }
@@ -89,12 +93,18 @@ public class BytecodeGenerator {
     emit2(mgenc, POP_FIELD, mgenc.getFieldIndex(fieldName));
   }
 
+  public void emitPOPFIELD(final MethodGenerationContext mgenc, final byte fieldIndex) {
+    emit2(mgenc, POP_FIELD, fieldIndex);
+  }
+
   public void emitSUPERSEND(final MethodGenerationContext mgenc, final SSymbol msg) {
     emit2(mgenc, SUPER_SEND, mgenc.findLiteralIndex(msg));
   }
 
   public void emitSEND(final MethodGenerationContext mgenc, final SSymbol msg) {
-    emit2(mgenc, SEND, mgenc.findLiteralIndex(msg));
+    // arithmetic and comparisons use specialised bytecodes, which have the
+    // same operand as a send to fall back on
+    emit2(mgenc, getSendBytecode(msg.getEmbeddedString()), mgenc.findLiteralIndex(msg));
   }
 
   public void emitPUSHCONSTANT(final MethodGenerationContext mgenc,
@@ -106,20 +116,80 @@ public class BytecodeGenerator {
     emit2(mgenc, PUSH_CONSTANT, literalIndex);
   }
 
+  /**
+   * Emits a forward jump, whose offset is patched once the target is known.
+   *
+   * @return the index of the jump bytecode
+   */
+  public int emitJumpWithDummyOffset(final MethodGenerationContext mgenc, final byte jump) {
+    int jumpIndex = mgenc.getNumberOfBytecodes();
+    emit3(mgenc, jump, (byte) 0, (byte) 0);
+    return jumpIndex;
+  }
+
+  public void emitJUMPBACKWARD(final MethodGenerationContext mgenc, final int targetIndex) {
+    emitJump(mgenc, JUMP_BACKWARD, mgenc.getNumberOfBytecodes() - targetIndex);
+  }
+
+  public void emitJump(final MethodGenerationContext mgenc, final byte jump,
+      final int offset) {
+    assert isJump(jump);
+    assert 0 <= offset && offset <= 0xFFFF;
+    // offsets are unsigned 16-bit values, stored low byte first
+    emit3(mgenc, jump, (byte) offset, (byte) (offset >> 8));
+  }
+
+  /**
+   * Emits the test of a counted loop, whose offset is patched once the end
+   * of the loop is known.
+   *
+   * @return the index of the loop test bytecode
+   */
+  public int emitLoopTestWithDummyOffset(final MethodGenerationContext mgenc,
+      final byte test, final byte counter, final byte limit) {
+    int testIndex = mgenc.getNumberOfBytecodes();
+    emitLoopTest(mgenc, test, counter, limit, 0);
+    return testIndex;
+  }
+
+  public void emitLoopTest(final MethodGenerationContext mgenc, final byte test,
+      final byte counter, final byte limit, final int offset) {
+    assert isLoopTest(test);
+    assert 0 <= offset && offset <= 0xFFFF;
+    emit5(mgenc, test, counter, limit, (byte) offset, (byte) (offset >> 8));
+  }
+
+  public void emitINCLOCAL(final MethodGenerationContext mgenc, final byte idx) {
+    emit2(mgenc, INC_LOCAL, idx);
+  }
+
+  public void emitDECLOCAL(final MethodGenerationContext mgenc, final byte idx) {
+    emit2(mgenc, DEC_LOCAL, idx);
+  }
+
   private void emit1(final MethodGenerationContext mgenc, final byte code) {
     mgenc.addBytecode(code);
   }
 
   private void emit2(final MethodGenerationContext mgenc, final byte code, final byte idx) {
     mgenc.addBytecode(code);
-    mgenc.addBytecode(idx);
+    mgenc.addBytecodeArgument(idx);
   }
 
   private void emit3(final MethodGenerationContext mgenc, final byte code, final byte idx,
       final byte ctx) {
     mgenc.addBytecode(code);
-    mgenc.addBytecode(idx);
-    mgenc.addBytecode(ctx);
+    mgenc.addBytecodeArgument(idx);
+    mgenc.addBytecodeArgument(ctx);
+  }
+
+  private void emit5(final MethodGenerationContext mgenc, final byte code, final byte arg1,
+      final byte arg2, final byte arg3, final byte arg4) {
+    mgenc.addBytecode(code);
+    mgenc.addBytecodeArgument(arg1);
+    mgenc.addBytecodeArgument(arg2);
+    mgenc.addBytecodeArgument(arg3);
+    mgenc.addBytecodeArgument(arg4);
   }
 
 }
@@ -0,0 +1,107 @@
+package som.compiler;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import som.vm.Universe;
+import som.vmobjects.SClass;
+
+
+/**
+ * A directory of compiled classes, so that a class does not need to be
+ * parsed again in later runs. Each class is kept in a {@link ClassFile} of
+ * its own. Reading a class maps its file into memory and assembles it like
+ * a freshly parsed one.
+ *
+ * <p>
+ * A file is only used for the source file it was compiled from, while the
+ * source has the same length and modification time, or else the same
+ * checksum. The fields of the super class are compiled into the field
+ * accesses, so they have to be unchanged as well. In all other cases the
+ * class is compiled from source again, and its file is replaced.
+ */
+public final class ClassCache {
+
+  private static final int MAGIC = 0x534f4d43; // "SOMC"
+
+  private final ClassFile classFile;
+  private final File      directory;
+
+  public ClassCache(final Universe universe, final String directory) {
+    this.classFile = new ClassFile(universe);
+    this.directory = new File(directory);
+  }
+
+  /**
+   * Returns the class compiled from the given source file, or null if the
+   * file is not in the cache or its entry is out of date.
+   */
+  public SClass load(final String path, final String file, final SClass systemClass)
+      throws ProgramDefinitionError {
+    File source = new File(path + Universe.fileSeparator + file + ".som");
+    File cached = getCacheFile(source);
+    if (!source.isFile() || !cached.isFile()) {
+      return null;
+    }
+
+    try {
+      ByteBuffer buffer = ClassFile.map(cached);
+      if (buffer.getInt() != MAGIC || buffer.getInt() != ClassFile.FORMAT_VERSION
+          || !ClassFile.readSource(buffer).equals(source.getAbsoluteFile())
+          || !ClassFile.isUpToDate(buffer, source)) {
+        return null;
+      }
+      return classFile.readClass(buffer, systemClass);
+    } catch (IOException | BufferUnderflowException e) {
+      // a damaged file is compiled from source again, and replaced
+      return null;
+    }
+  }
+
+  /**
+   * Writes the class that was just parsed from the given source file.
+   * Failing to write it only means that it is parsed again next time.
+   */
+  public void store(final String sourceName, final ClassGenerationContext cgc) {
+    File source = new File(sourceName);
+    File cached = getCacheFile(source);
+
+    try {
+      directory.mkdirs();
+      File temporary = File.createTempFile(cached.getName(), ".tmp", directory);
+      try (DataOutputStream out = new DataOutputStream(
+          new BufferedOutputStream(new FileOutputStream(temporary)))) {
+        out.writeInt(MAGIC);
+        out.writeInt(ClassFile.FORMAT_VERSION);
+        ClassFile.writeSource(out, source);
+        ClassFile.writeClass(out, cgc);
+      }
+
+      // other runs may read the file at the same time, so it is replaced
+      // as a whole
+      try {
+        Files.move(temporary.toPath(), cached.toPath(),
+            StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } catch (IOException e) {
+        temporary.delete();
+      }
+    } catch (IOException e) {
+      // the class is simply not cached
+    }
+  }
+
+  private File getCacheFile(final File source) {
+    // classes of the same name in different directories get different files
+    String sourcePath = source.getAbsolutePath();
+    String name = source.getName().replace(".som", "") + "-"
+        + Integer.toHexString(sourcePath.hashCode()) + ".somc";
+    return new File(directory, name);
+  }
+}
@@ -0,0 +1,362 @@
+package som.compiler;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import som.vm.Universe;
+import som.vmobjects.SAbstractObject;
+import som.vmobjects.SArray;
+import som.vmobjects.SBigInteger;
+import som.vmobjects.SClass;
+import som.vmobjects.SDouble;
+import som.vmobjects.SInteger;
+import som.vmobjects.SInvokable;
+import som.vmobjects.SMethod;
+import som.vmobjects.SPrimitive;
+import som.vmobjects.SString;
+import som.vmobjects.SSymbol;
+
+
+/**
+ * The binary form of compiled classes, as kept by the {@link ClassCache} and
+ * in images of the universe. A class is written as the parser put it into
+ * the {@link ClassGenerationContext}: the fields, and for each method its
+ * bytecodes, literals, number of locals and stack depth. Primitives are
+ * written by their signature only, and bound to their implementation when
+ * the class is loaded. Reading a class assembles it like a freshly parsed
+ * one.
+ *
+ * <p>
+ * Each class comes with the path, length, modification time and checksum of
+ * its source file, so that readers can tell whether it is still up to date.
+ */
+public final class ClassFile {
+
+  // changes whenever the layout of the classes or the bytecodes change
+  public static final int FORMAT_VERSION = 2;
+
+  private static final byte PRIMITIVE = 0;
+  private static final byte METHOD    = 1;
+
+  private static final byte NIL         = 0;
+  private static final byte SYMBOL      = 1;
+  private static final byte STRING      = 2;
+  private static final byte INTEGER     = 3;
+  private static final byte BIG_INTEGER = 4;
+  private static final byte DOUBLE      = 5;
+  private static final byte BLOCK       = 6;
+
+  private static final String NIL_SUPER_CLASS = "nil";
+
+  private final Universe universe;
+
+  public ClassFile(final Universe universe) {
+    this.universe = universe;
+  }
+
+  public static ByteBuffer map(final File file) throws IOException {
+    // the mapping stays valid after the channel is closed
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+  }
+
+  private static long checksum(final File source) throws IOException {
+    CRC32 crc = new CRC32();
+    byte[] chunk = new byte[8192];
+    try (InputStream in = Files.newInputStream(source.toPath())) {
+      int read;
+      while ((read = in.read(chunk)) > 0) {
+        crc.update(chunk, 0, read);
+      }
+    }
+    return crc.getValue();
+  }
+
+  public static void writeSource(final DataOutputStream out, final File source)
+      throws IOException {
+    writeString(out, source.getAbsolutePath());
+    out.writeLong(source.length());
+    out.writeLong(source.lastModified());
+    out.writeLong(checksum(source));
+  }
+
+  public static File readSource(final ByteBuffer buffer) throws IOException {
+    return new File(readString(buffer));
+  }
+
+  /**
+   * Reads the length, modification time and checksum that follow the path
+   * of a source file, and tells whether the source still matches them.
+   */
+  public static boolean isUpToDate(final ByteBuffer buffer, final File source)
+      throws IOException {
+    long length = buffer.getLong();
+    long lastModified = buffer.getLong();
+    long checksum = buffer.getLong();
+    if (length == source.length() && lastModified == source.lastModified()) {
+      return true;
+    }
+
+    // a source that was only touched or copied does not need to be parsed
+    return length == source.length() && checksum == checksum(source);
+  }
+
+  public static void writeClass(final DataOutputStream out,
+      final ClassGenerationContext cgc) throws IOException {
+    writeString(out, cgc.getName().getEmbeddedString());
+    writeString(out, cgc.getSuperName().getEmbeddedString());
+    writeFields(out, cgc.getInstanceFields(), cgc.getNumberOfSuperInstanceFields());
+    writeMethods(out, cgc.getInstanceMethods());
+    writeFields(out, cgc.getClassFields(), cgc.getNumberOfSuperClassFields());
+    writeMethods(out, cgc.getClassMethods());
+  }
+
+  /**
+   * Writes a class that was loaded before, and whose methods did not run
+   * yet. The fields of the class start with the own fields of its super
+   * class, as the parser put them there.
+   */
+  public static void writeClass(final DataOutputStream out, final SClass clazz)
+      throws IOException {
+    SClass metaclass = clazz.getSOMClass();
+    boolean hasSuperClass = clazz.hasSuperClass();
+    SClass superClass = hasSuperClass ? (SClass) clazz.getSuperClass() : null;
+
+    writeString(out, clazz.getName().getEmbeddedString());
+    writeString(out, hasSuperClass ? superClass.getName().getEmbeddedString()
+        : NIL_SUPER_CLASS);
+    writeFields(out, toList(clazz.getInstanceFields(), SSymbol.class),
+        hasSuperClass ? superClass.getInstanceFields().getNumberOfIndexableFields() : 0);
+    writeMethods(out, toList(clazz.getInstanceInvokables(), SInvokable.class));
+    writeFields(out, toList(metaclass.getInstanceFields(), SSymbol.class),
+        hasSuperClass
+            ? superClass.getSOMClass().getInstanceFields().getNumberOfIndexableFields()
+            : 0);
+    writeMethods(out, toList(metaclass.getInstanceInvokables(), SInvokable.class));
+  }
+
+  private static <T> List<T> toList(final SArray array, final Class<T> elementClass) {
+    List<T> list = new ArrayList<T>(array.getNumberOfIndexableFields());
+    for (int i = 0; i < array.getNumberOfIndexableFields(); i++) {
+      list.add(elementClass.cast(array.getIndexableField(i)));
+    }
+    return list;
+  }
+
+  /**
+   * Reads a class and assembles it, or returns null if the fields of its
+   * super class changed since it was compiled.
+   */
+  public SClass readClass(final ByteBuffer buffer, final SClass systemClass)
+      throws IOException, ProgramDefinitionError {
+    ClassGenerationContext cgc = new ClassGenerationContext(universe);
+    cgc.setName(universe.symbolFor(readString(buffer)));
+    SSymbol superName = universe.symbolFor(readString(buffer));
+    cgc.setSuperName(superName);
+
+    // Load the super class like the parser does, and check that its fields
+    // are still the ones the field accesses were compiled for
+    if (!superName.getEmbeddedString().equals(NIL_SUPER_CLASS)) {
+      SClass superClass = universe.loadClass(superName);
+      cgc.setInstanceFieldsOfSuper(superClass.getInstanceFields());
+      cgc.setClassFieldsOfSuper(superClass.getSOMClass().getInstanceFields());
+    }
+
+    if (!readFields(buffer, cgc.getInstanceFields())) {
+      return null;
+    }
+    for (SInvokable method : readMethods(buffer)) {
+      cgc.addInstanceMethod(method);
+    }
+    if (!readFields(buffer, cgc.getClassFields())) {
+      return null;
+    }
+    for (SInvokable method : readMethods(buffer)) {
+      cgc.addClassMethod(method);
+    }
+
+    if (systemClass == null) {
+      return cgc.assemble();
+    }
+    cgc.assembleSystemClass(systemClass);
+    return systemClass;
+  }
+
+  private static void writeFields(final DataOutputStream out, final List<SSymbol> fields,
+      final int numberOfSuperFields) throws IOException {
+    out.writeInt(fields.size());
+    out.writeInt(numberOfSuperFields);
+    for (SSymbol field : fields) {
+      writeString(out, field.getEmbeddedString());
+    }
+  }
+
+  private boolean readFields(final ByteBuffer buffer, final List<SSymbol> fields)
+      throws IOException {
+    int numberOfFields = readCount(buffer);
+    int numberOfSuperFields = readCount(buffer);
+    if (numberOfSuperFields != fields.size()) {
+      return false;
+    }
+
+    for (int i = 0; i < numberOfFields; i++) {
+      SSymbol field = universe.symbolFor(readString(buffer));
+      if (i >= numberOfSuperFields) {
+        fields.add(field);
+      } else if (fields.get(i) != field) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static void writeMethods(final DataOutputStream out,
+      final List<SInvokable> methods) throws IOException {
+    out.writeInt(methods.size());
+    for (SInvokable method : methods) {
+      if (method.isPrimitive()) {
+        out.writeByte(PRIMITIVE);
+        writeString(out, method.getSignature().getEmbeddedString());
+      } else {
+        out.writeByte(METHOD);
+        writeMethod(out, (SMethod) method);
+      }
+    }
+  }
+
+  private List<SInvokable> readMethods(final ByteBuffer buffer) throws IOException {
+    int numberOfMethods = readCount(buffer);
+    List<SInvokable> methods = new ArrayList<SInvokable>(numberOfMethods);
+    for (int i = 0; i < numberOfMethods; i++) {
+      byte kind = buffer.get();
+      if (kind == PRIMITIVE) {
+        methods.add(SPrimitive.getEmptyPrimitive(readString(buffer), universe));
+      } else if (kind == METHOD) {
+        methods.add(readMethod(buffer, false));
+      } else {
+        throw new IOException("Unknown kind of method " + kind);
+      }
+    }
+    return methods;
+  }
+
+  private static void writeMethod(final DataOutputStream out, final SMethod method)
+      throws IOException {
+    // the bytecodes are written before the method ever runs, so that they
+    // are not quickened yet
+    writeString(out, method.getSignature().getEmbeddedString());
+    out.writeInt((int) method.getNumberOfLocals().getEmbeddedInteger());
+    out.writeInt((int) method.getMaximumNumberOfStackElements().getEmbeddedInteger());
+
+    byte[] bytecodes = method.getBytecodes();
+    out.writeInt(bytecodes.length);
+    out.write(bytecodes);
+
+    SAbstractObject[] literals = method.getLiterals();
+    out.writeInt(literals.length);
+    for (SAbstractObject literal : literals) {
+      writeLiteral(out, literal);
+    }
+  }
+
+  private SMethod readMethod(final ByteBuffer buffer, final boolean blockMethod)
+      throws IOException {
+    SSymbol signature = universe.symbolFor(readString(buffer));
+    int numberOfLocals = buffer.getInt();
+    int maxStackDepth = buffer.getInt();
+
+    byte[] bytecodes = new byte[readCount(buffer)];
+    buffer.get(bytecodes);
+
+    int numberOfLiterals = readCount(buffer);
+    List<SAbstractObject> literals = new ArrayList<SAbstractObject>(numberOfLiterals);
+    for (int i = 0; i < numberOfLiterals; i++) {
+      literals.add(readLiteral(buffer));
+    }
+
+    return MethodGenerationContext.assemble(universe, signature, blockMethod, bytecodes,
+        literals, numberOfLocals, maxStackDepth);
+  }
+
+  private static void writeLiteral(final DataOutputStream out,
+      final SAbstractObject literal) throws IOException {
+    if (literal instanceof SSymbol) {
+      out.writeByte(SYMBOL);
+      writeString(out, ((SSymbol) literal).getEmbeddedString());
+    } else if (literal instanceof SString) {
+      out.writeByte(STRING);
+      writeString(out, ((SString) literal).getEmbeddedString());
+    } else if (literal instanceof SInteger) {
+      out.writeByte(INTEGER);
+      out.writeLong(((SInteger) literal).getEmbeddedInteger());
+    } else if (literal instanceof SBigInteger) {
+      out.writeByte(BIG_INTEGER);
+      writeString(out, ((SBigInteger) literal).getEmbeddedBiginteger().toString());
+    } else if (literal instanceof SDouble) {
+      out.writeByte(DOUBLE);
+      out.writeLong(Double.doubleToRawLongBits(((SDouble) literal).getEmbeddedDouble()));
+    } else if (literal instanceof SMethod) {
+      out.writeByte(BLOCK);
+      writeMethod(out, (SMethod) literal);
+    } else {
+      // the only other literal the compiler emits is nil
+      out.writeByte(NIL);
+    }
+  }
+
+  private SAbstractObject readLiteral(final ByteBuffer buffer) throws IOException {
+    byte tag = buffer.get();
+    switch (tag) {
+      case NIL:
+        return universe.nilObject;
+      case SYMBOL:
+        return universe.symbolFor(readString(buffer));
+      case STRING:
+        return universe.newString(readString(buffer));
+      case INTEGER:
+        return universe.newInteger(buffer.getLong());
+      case BIG_INTEGER:
+        return universe.newBigInteger(new BigInteger(readString(buffer)));
+      case DOUBLE:
+        return universe.newDouble(Double.longBitsToDouble(buffer.getLong()));
+      case BLOCK:
+        return readMethod(buffer, true);
+      default:
+        throw new IOException("Unknown kind of literal " + tag);
+    }
+  }
+
+  public static void writeString(final DataOutputStream out, final String string)
+      throws IOException {
+    byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  public static int readCount(final ByteBuffer buffer) throws IOException {
+    // each counted element takes at least one byte
+    int count = buffer.getInt();
+    if (count < 0 || count > buffer.remaining()) {
+      throw new IOException("Damaged class file");
+    }
+    return count;
+  }
+
+  public static String readString(final ByteBuffer buffer) throws IOException {
+    byte[] bytes = new byte[readCount(buffer)];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
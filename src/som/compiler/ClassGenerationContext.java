@@ -49,6 +49,10 @@ public class ClassGenerationContext {
   private final List<SSymbol>    classFields     = new ArrayList<SSymbol>();
   private final List<SInvokable> classMethods    = new ArrayList<SInvokable>();
 
+  // the fields taken from the super class come first
+  private int numberOfSuperInstanceFields;
+  private int numberOfSuperClassFields;
+
   public void setName(final SSymbol name) {
     this.name = name;
   }
@@ -59,6 +63,7 @@ public class ClassGenerationContext {
 
   public void setInstanceFieldsOfSuper(final SArray fieldNames) {
     int numFields = fieldNames.getNumberOfIndexableFields();
+    numberOfSuperInstanceFields = numFields;
     for (int i = 0; i < numFields; i++) {
       instanceFields.add((SSymbol) fieldNames.getIndexableField(i));
     }
@@ -66,6 +71,7 @@ public class ClassGenerationContext {
 
   public void setClassFieldsOfSuper(final SArray fieldNames) {
     int numFields = fieldNames.getNumberOfIndexableFields();
+    numberOfSuperClassFields = numFields;
     for (int i = 0; i < numFields; i++) {
       classFields.add((SSymbol) fieldNames.getIndexableField(i));
     }
@@ -107,6 +113,38 @@ public class ClassGenerationContext {
     return classSide;
   }
 
+  SSymbol getName() {
+    return name;
+  }
+
+  SSymbol getSuperName() {
+    return superName;
+  }
+
+  List<SSymbol> getInstanceFields() {
+    return instanceFields;
+  }
+
+  int getNumberOfSuperInstanceFields() {
+    return numberOfSuperInstanceFields;
+  }
+
+  List<SInvokable> getInstanceMethods() {
+    return instanceMethods;
+  }
+
+  List<SSymbol> getClassFields() {
+    return classFields;
+  }
+
+  int getNumberOfSuperClassFields() {
+    return numberOfSuperClassFields;
+  }
+
+  List<SInvokable> getClassMethods() {
+    return classMethods;
+  }
+
   public som.vmobjects.SClass assemble() throws ProgramDefinitionError {
     // build class class name
     String ccname = name.getEmbeddedString() + " class";
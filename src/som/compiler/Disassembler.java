@@ -87,7 +87,7 @@ public class Disassembler {
         Universe.errorPrintln();
         continue;
       }
-      switch (bytecode) {
+      switch (getGenericBytecode(bytecode)) {
         case PUSH_LOCAL:
           Universe.errorPrintln("local: " + m.getBytecode(b + 1) + ", context: "
               + m.getBytecode(b + 2));
@@ -133,6 +133,15 @@ public class Disassembler {
           break;
         }
         case SEND:
+        case ADD:
+        case SUBTRACT:
+        case MULTIPLY:
+        case LESS_THAN:
+        case GREATER_THAN:
+        case LESS_OR_EQUAL:
+        case GREATER_OR_EQUAL:
+        case EQUAL:
+        case IDENTICAL:
           Universe.errorPrintln("(index: " + m.getBytecode(b + 1)
               + ") signature: " + ((SSymbol) m.getConstant(b)).toString());
           break;
@@ -140,6 +149,26 @@ public class Disassembler {
           Universe.errorPrintln("(index: " + m.getBytecode(b + 1)
               + ") signature: " + ((SSymbol) m.getConstant(b)).toString());
           break;
+        case JUMP:
+        case JUMP_IF_TRUE:
+        case JUMP_IF_FALSE:
+          Universe.errorPrintln("(offset: " + m.getJumpOffset(b) + ") target: "
+              + (b + m.getJumpOffset(b)));
+          break;
+        case JUMP_BACKWARD:
+          Universe.errorPrintln("(offset: " + m.getJumpOffset(b) + ") target: "
+              + (b - m.getJumpOffset(b)));
+          break;
+        case JUMP_IF_GREATER:
+        case JUMP_IF_LESS:
+          Universe.errorPrintln("counter: " + m.getBytecode(b + 1) + ", limit: "
+              + m.getBytecode(b + 2) + " (offset: " + m.getJumpOffset(b) + ") target: "
+              + (b + m.getJumpOffset(b)));
+          break;
+        case INC_LOCAL:
+        case DEC_LOCAL:
+          Universe.errorPrintln("local: " + m.getBytecode(b + 1));
+          break;
         default:
           Universe.errorPrintln("<incorrect bytecode>");
       }
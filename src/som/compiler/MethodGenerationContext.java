@@ -27,16 +27,24 @@ package som.compiler;
 
 import static som.interpreter.Bytecodes.*;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.Vector;
 
 import som.vm.Universe;
 import som.vmobjects.SAbstractObject;
+import som.vmobjects.SInteger;
 import som.vmobjects.SInvokable;
 import som.vmobjects.SMethod;
+import som.vmobjects.SObject;
 import som.vmobjects.SPrimitive;
 import som.vmobjects.SSymbol;
+import som.vmobjects.STrivialMethod;
 
 
 public class MethodGenerationContext {
@@ -52,6 +60,18 @@ public class MethodGenerationContext {
   private boolean                     finished;
   private final Vector<Byte>          bytecode  = new Vector<Byte>();
 
+  // start index of each emitted instruction, to be able to look at the last
+  // few instructions when inlining blocks
+  private final List<Integer> instructionStarts = new ArrayList<Integer>();
+
+  // instructions that push a block literal of the source code, only these
+  // can be inlined, and not the blocks copied along with an inlined block
+  private final Set<Integer> blockLiterals = new HashSet<Integer>();
+
+  // name used for the locals that hold arguments and locals of inlined blocks,
+  // it can never clash with an identifier in the source code
+  private static final String INLINED_LOCAL = "$inlined";
+
   public void setHolder(final ClassGenerationContext cgenc) {
     holderGenc = cgenc;
   }
@@ -69,79 +89,172 @@ public class MethodGenerationContext {
   }
 
   public SMethod assemble(final Universe universe) {
+    byte[] bytecodes = new byte[bytecode.size()];
+    for (int i = 0; i < bytecodes.length; i++) {
+      bytecodes[i] = bytecode.elementAt(i);
+    }
+    return assemble(universe, signature, blockMethod, bytecodes, literals, locals.size(),
+        computeStackDepth());
+  }
+
+  /**
+   * Creates the method with the given bytecodes and literals. Methods that
+   * are read from a {@link ClassCache} are created the same way as methods
+   * that were just compiled.
+   */
+  static SMethod assemble(final Universe universe, final SSymbol signature,
+      final boolean blockMethod, final byte[] bytecodes,
+      final List<SAbstractObject> literals, final int numLocals, final int stackDepth) {
     // create a method instance with the given number of bytecodes and
     // literals
     int numLiterals = literals.size();
-    int numLocals = locals.size();
 
-    SMethod meth = universe.newMethod(signature, bytecode.size(), numLiterals,
-        universe.newInteger(numLocals), universe.newInteger(computeStackDepth()),
-        literals);
+    SInteger numberOfLocals = universe.newInteger(numLocals);
+    SInteger maxStackDepth = universe.newInteger(stackDepth);
+
+    // methods that only access a field, or return an argument or a literal,
+    // are run without a frame
+    SMethod meth = blockMethod ? null
+        : newTrivialMethod(universe, signature, bytecodes, literals, numberOfLocals,
+            maxStackDepth);
+    if (meth == null) {
+      meth = universe.newMethod(signature, bytecodes.length, numLiterals, numberOfLocals,
+          maxStackDepth, literals);
+    }
 
     // copy bytecodes into method
-    int i = 0;
-    for (byte bc : bytecode) {
-      meth.setBytecode(i++, bc);
+    for (int i = 0; i < bytecodes.length; i++) {
+      meth.setBytecode(i, bytecodes[i]);
+    }
+
+    // blocks that do not refer to their context can be allocated only once
+    if (blockMethod && !accessesContext(meth, 0)) {
+      meth.setClean();
     }
 
+    // frames only need to be materialized if blocks capture more than the
+    // arguments
+    meth.setHasCapturingBlocks(hasCapturingBlocks(meth));
+
     // return the method - the holder field is to be set later on!
     return meth;
   }
 
+  private static SMethod newTrivialMethod(final Universe universe, final SSymbol signature,
+      final byte[] bytecode, final List<SAbstractObject> literals,
+      final SInteger numberOfLocals, final SInteger maxStackDepth) {
+    int numBytecodes = bytecode.length;
+    int numLiterals = literals.size();
+
+    if (numBytecodes == 3 && bytecode[2] == RETURN_LOCAL) {
+      // ^field or ^literal
+      if (bytecode[0] == PUSH_FIELD) {
+        return new STrivialMethod.FieldRead(universe.nilObject, signature, numBytecodes,
+            numberOfLocals, maxStackDepth, numLiterals, literals, bytecode[1]);
+      }
+      if (bytecode[0] == PUSH_CONSTANT) {
+        return new STrivialMethod.LiteralReturn(universe.nilObject, signature,
+            numBytecodes, numberOfLocals, maxStackDepth, numLiterals, literals,
+            literals.get(bytecode[1] & 0xFF));
+      }
+    } else if (numBytecodes == 4 && bytecode[0] == PUSH_ARGUMENT
+        && bytecode[2] == 0 && bytecode[3] == RETURN_LOCAL) {
+      // ^self or ^argument
+      return new STrivialMethod.ArgumentReturn(universe.nilObject, signature, numBytecodes,
+          numberOfLocals, maxStackDepth, numLiterals, literals, bytecode[1]);
+    } else if (numBytecodes == 11 && bytecode[0] == PUSH_ARGUMENT
+        && bytecode[2] == 0 && bytecode[3] == DUP
+        && bytecode[4] == POP_FIELD && bytecode[6] == POP
+        && bytecode[7] == PUSH_ARGUMENT && bytecode[8] == 0
+        && bytecode[9] == 0 && bytecode[10] == RETURN_LOCAL) {
+      // field := argument
+      return new STrivialMethod.FieldWrite(universe.nilObject, signature, numBytecodes,
+          numberOfLocals, maxStackDepth, numLiterals, literals, bytecode[5],
+          bytecode[1]);
+    }
+    return null;
+  }
+
   private int computeStackDepth() {
-    int depth = 0;
+    // jumps make the control flow non-linear, so the depth is propagated
+    // along all successors of a bytecode, starting from the first one
+    int[] depthAt = new int[bytecode.size()];
+    Arrays.fill(depthAt, -1);
+
+    Deque<Integer> worklist = new ArrayDeque<Integer>();
+    depthAt[0] = 0;
+    worklist.push(0);
+
     int maxDepth = 0;
-    int i = 0;
 
-    while (i < bytecode.size()) {
-      switch (bytecode.elementAt(i)) {
+    while (!worklist.isEmpty()) {
+      int i = worklist.pop();
+      int depth = depthAt[i];
+      byte bc = bytecode.elementAt(i);
+      int next = i + getBytecodeLength(bc);
+
+      switch (bc) {
         case HALT:
-          i++;
-          break;
+        case RETURN_LOCAL:
+        case RETURN_NON_LOCAL:
+          // no successor
+          continue;
         case DUP:
-          depth++;
-          i++;
-          break;
         case PUSH_LOCAL:
         case PUSH_ARGUMENT:
-          depth++;
-          i += 3;
-          break;
         case PUSH_FIELD:
         case PUSH_BLOCK:
         case PUSH_CONSTANT:
         case PUSH_GLOBAL:
           depth++;
-          i += 2;
           break;
         case POP:
-          depth--;
-          i++;
-          break;
         case POP_LOCAL:
         case POP_ARGUMENT:
-          depth--;
-          i += 3;
-          break;
         case POP_FIELD:
           depth--;
-          i += 2;
           break;
         case SEND:
+        case ADD:
+        case SUBTRACT:
+        case MULTIPLY:
+        case LESS_THAN:
+        case GREATER_THAN:
+        case LESS_OR_EQUAL:
+        case GREATER_OR_EQUAL:
+        case EQUAL:
+        case IDENTICAL:
         case SUPER_SEND: {
           // these are special: they need to look at the number of
           // arguments (extractable from the signature)
-          SSymbol sig = (SSymbol) literals.get(bytecode.elementAt(i + 1));
+          SSymbol sig = (SSymbol) literals.get(bytecode.elementAt(i + 1) & 0xFF);
 
           depth -= sig.getNumberOfSignatureArguments();
 
           depth++; // return value
-          i += 2;
           break;
         }
-        case RETURN_LOCAL:
-        case RETURN_NON_LOCAL:
-          i++;
+        case JUMP:
+          next = i + getJumpOffset(i);
+          break;
+        case JUMP_BACKWARD:
+          next = i - getJumpOffset(i);
+          break;
+        case JUMP_IF_TRUE:
+        case JUMP_IF_FALSE:
+          depth--;
+          propagateStackDepth(depthAt, worklist, i + getJumpOffset(i), depth);
+          break;
+        case JUMP_IF_GREATER:
+        case JUMP_IF_LESS:
+          // a counter or limit that is not a number gets a message sent,
+          // with both of them on the stack
+          maxDepth = Math.max(maxDepth, depth + 2);
+          propagateStackDepth(depthAt, worklist, i + getJumpOffset(i), depth);
+          break;
+        case INC_LOCAL:
+        case DEC_LOCAL:
+          maxDepth = Math.max(maxDepth, depth + 2);
           break;
         default:
           throw new IllegalStateException("Illegal bytecode "
@@ -151,11 +264,34 @@ public class MethodGenerationContext {
       if (depth > maxDepth) {
         maxDepth = depth;
       }
+
+      propagateStackDepth(depthAt, worklist, next, depth);
     }
 
     return maxDepth;
   }
 
+  private void propagateStackDepth(final int[] depthAt, final Deque<Integer> worklist,
+      final int target, final int depth) {
+    if (target >= depthAt.length) {
+      // falling off the end of a method only happens in dead code
+      return;
+    }
+    if (depthAt[target] == -1) {
+      depthAt[target] = depth;
+      worklist.push(target);
+    } else {
+      assert depthAt[target] == depth : "Inconsistent stack depth at " + target;
+    }
+  }
+
+  private int getJumpOffset(final int jumpIndex) {
+    // the offset is stored in the last two bytes of a jump
+    int offsetIndex = jumpIndex + getBytecodeLength(bytecode.elementAt(jumpIndex)) - 2;
+    return (bytecode.elementAt(offsetIndex) & 0xFF)
+        | ((bytecode.elementAt(offsetIndex + 1) & 0xFF) << 8);
+  }
+
   public void setPrimitive(final boolean prim) {
     primitive = prim;
   }
@@ -195,6 +331,9 @@ public class MethodGenerationContext {
   }
 
   public void removeLastBytecode() {
+    // only used to elide a trailing POP, which is a single byte
+    blockLiterals.remove(instructionStarts.size() - 1);
+    instructionStarts.remove(instructionStarts.size() - 1);
     bytecode.removeElementAt(bytecode.size() - 1);
   }
 
@@ -229,7 +368,7 @@ public class MethodGenerationContext {
 
   public byte addLiteral(final SAbstractObject lit) {
     int i = literals.size();
-    assert i < 128;
+    assert i < 256;
     literals.add(lit);
     return (byte) i;
   }
@@ -273,9 +412,444 @@ public class MethodGenerationContext {
   }
 
   public void addBytecode(final byte code) {
+    instructionStarts.add(bytecode.size());
     bytecode.add(code);
   }
 
+  public void addBytecodeArgument(final byte arg) {
+    bytecode.add(arg);
+  }
+
+  public int getNumberOfBytecodes() {
+    return bytecode.size();
+  }
+
+  public void patchJumpOffsetToPointToNextInstruction(final int jumpIndex) {
+    int offset = bytecode.size() - jumpIndex;
+    if (offset > 0xFFFF) {
+      throw new IllegalStateException("Jump offset " + offset + " in "
+          + signature.getEmbeddedString() + " does not fit into 16 bits");
+    }
+    int offsetIndex = jumpIndex + getBytecodeLength(bytecode.elementAt(jumpIndex)) - 2;
+    bytecode.set(offsetIndex, (byte) offset);
+    bytecode.set(offsetIndex + 1, (byte) (offset >> 8));
+  }
+
+  /**
+   * Marks the last instruction, a PUSH_BLOCK, as the push of a block literal
+   * that was just parsed.
+   */
+  public void markBlockLiteral() {
+    int instruction = instructionStarts.size() - 1;
+    assert bytecode.elementAt(instructionStarts.get(instruction)) == PUSH_BLOCK;
+    blockLiterals.add(instruction);
+  }
+
+  /**
+   * Returns the block pushed by the instruction {@code back} instructions
+   * before the last one, or null if that instruction does not push a block
+   * literal taking the given number of arguments (including the block
+   * itself). A PUSH_BLOCK that ends an inlined block is not a literal at
+   * this position, and jumps may already point past it.
+   */
+  public SMethod getPushedBlock(final int back, final int numberOfArguments) {
+    int instruction = instructionStarts.size() - 1 - back;
+    if (instruction < 0 || !blockLiterals.contains(instruction)) {
+      return null;
+    }
+
+    int start = instructionStarts.get(instruction);
+    if (bytecode.elementAt(start) != PUSH_BLOCK) {
+      return null;
+    }
+
+    SMethod block = (SMethod) literals.get(bytecode.elementAt(start + 1) & 0xFF);
+    if (block.getNumberOfArguments() != numberOfArguments) {
+      return null;
+    }
+    return block;
+  }
+
+  public SMethod removeLastPushBlock() {
+    blockLiterals.remove(instructionStarts.size() - 1);
+    int start = instructionStarts.remove(instructionStarts.size() - 1);
+    assert bytecode.elementAt(start) == PUSH_BLOCK;
+
+    SMethod block = (SMethod) literals.get(bytecode.elementAt(start + 1) & 0xFF);
+    bytecode.setSize(start);
+
+    // the block literal is added right before its PUSH_BLOCK is emitted,
+    // and nothing else refers to it
+    assert literals.get(literals.size() - 1) == block;
+    literals.remove(literals.size() - 1);
+    return block;
+  }
+
+  public byte addInlinedLocal() {
+    int i = locals.size();
+    assert i < 128;
+    locals.add(INLINED_LOCAL);
+    return (byte) i;
+  }
+
+  /**
+   * Copies the bytecodes of the given block into this method, so that it
+   * runs without allocating a block or a frame. The block's locals become
+   * locals of this method, and its arguments are mapped to the locals given
+   * in argumentSlots (index 0, the block itself, is never accessed). Accesses
+   * to outer contexts move one level closer. The value of the block is left
+   * on the stack.
+   */
+  public void inlineBlock(final SMethod block, final byte[] argumentSlots,
+      final BytecodeGenerator bcGen, final SObject nilObject) {
+    int numLocals = (int) block.getNumberOfLocals().getEmbeddedInteger();
+    byte[] localSlots = new byte[numLocals];
+
+    if (numLocals > 0) {
+      // the locals of a block start out as nil every time it is evaluated
+      addLiteralIfAbsent(nilObject);
+      for (int i = 0; i < numLocals; i++) {
+        localSlots[i] = addInlinedLocal();
+        bcGen.emitPUSHCONSTANT(this, nilObject);
+        bcGen.emitPOPLOCAL(this, localSlots[i], (byte) 0);
+      }
+    }
+
+    int numBytecodes = block.getNumberOfBytecodes();
+    if (numBytecodes == 1) {
+      // an empty block only consists of its return, and evaluates to nil
+      assert block.getBytecode(0) == RETURN_LOCAL;
+      addLiteralIfAbsent(nilObject);
+      bcGen.emitPUSHCONSTANT(this, nilObject);
+      return;
+    }
+
+    int i = 0;
+    while (i < numBytecodes) {
+      byte bc = block.getBytecode(i);
+
+      switch (bc) {
+        case DUP:
+          bcGen.emitDUP(this);
+          break;
+        case POP:
+          bcGen.emitPOP(this);
+          break;
+        case PUSH_LOCAL:
+        case POP_LOCAL: {
+          byte idx = block.getBytecode(i + 1);
+          byte ctx = block.getBytecode(i + 2);
+          if (ctx == 0) {
+            emitLocalAccess(bcGen, bc == PUSH_LOCAL, localSlots[idx], (byte) 0);
+          } else {
+            emitLocalAccess(bcGen, bc == PUSH_LOCAL, idx, (byte) (ctx - 1));
+          }
+          break;
+        }
+        case PUSH_ARGUMENT:
+        case POP_ARGUMENT: {
+          byte idx = block.getBytecode(i + 1);
+          byte ctx = block.getBytecode(i + 2);
+          if (ctx == 0) {
+            assert idx > 0 : "the block itself is not accessible in an inlined block";
+            emitLocalAccess(bcGen, bc == PUSH_ARGUMENT, argumentSlots[idx], (byte) 0);
+          } else if (bc == PUSH_ARGUMENT) {
+            bcGen.emitPUSHARGUMENT(this, idx, (byte) (ctx - 1));
+          } else {
+            bcGen.emitPOPARGUMENT(this, idx, (byte) (ctx - 1));
+          }
+          break;
+        }
+        case PUSH_FIELD:
+          bcGen.emitPUSHFIELD(this, block.getBytecode(i + 1));
+          break;
+        case POP_FIELD:
+          bcGen.emitPOPFIELD(this, block.getBytecode(i + 1));
+          break;
+        case PUSH_BLOCK: {
+          SMethod nested = (SMethod) block.getConstant(i);
+          adaptAfterOuterInlined(nested, 1, localSlots, argumentSlots);
+          addLiteral(nested);
+          bcGen.emitPUSHBLOCK(this, nested);
+          break;
+        }
+        case PUSH_CONSTANT: {
+          SAbstractObject lit = block.getConstant(i);
+          addLiteralIfAbsent(lit);
+          bcGen.emitPUSHCONSTANT(this, lit);
+          break;
+        }
+        case PUSH_GLOBAL: {
+          SSymbol global = (SSymbol) block.getConstant(i);
+          addLiteralIfAbsent(global);
+          bcGen.emitPUSHGLOBAL(this, global);
+          break;
+        }
+        case SEND:
+        case ADD:
+        case SUBTRACT:
+        case MULTIPLY:
+        case LESS_THAN:
+        case GREATER_THAN:
+        case LESS_OR_EQUAL:
+        case GREATER_OR_EQUAL:
+        case EQUAL:
+        case IDENTICAL:
+        case SUPER_SEND: {
+          SSymbol msg = (SSymbol) block.getConstant(i);
+          addLiteralIfAbsent(msg);
+          if (bc != SUPER_SEND) {
+            bcGen.emitSEND(this, msg);
+          } else {
+            bcGen.emitSUPERSEND(this, msg);
+          }
+          break;
+        }
+        case RETURN_LOCAL:
+          // the final return of the block, its value stays on the stack
+          assert i + 1 == numBytecodes;
+          break;
+        case RETURN_NON_LOCAL:
+          // returning from the home method is a local return, unless we
+          // are inlining into another block
+          if (blockMethod) {
+            bcGen.emitRETURNNONLOCAL(this);
+          } else {
+            bcGen.emitRETURNLOCAL(this);
+          }
+          break;
+        case JUMP:
+        case JUMP_IF_TRUE:
+        case JUMP_IF_FALSE:
+        case JUMP_BACKWARD:
+          // all instructions keep their length, so the offsets stay valid
+          bcGen.emitJump(this, bc, block.getJumpOffset(i));
+          break;
+        case JUMP_IF_GREATER:
+        case JUMP_IF_LESS:
+          // the loop counter and limit are locals of the block
+          bcGen.emitLoopTest(this, bc, localSlots[block.getBytecode(i + 1)],
+              localSlots[block.getBytecode(i + 2)], block.getJumpOffset(i));
+          break;
+        case INC_LOCAL:
+          bcGen.emitINCLOCAL(this, localSlots[block.getBytecode(i + 1)]);
+          break;
+        case DEC_LOCAL:
+          bcGen.emitDECLOCAL(this, localSlots[block.getBytecode(i + 1)]);
+          break;
+        default:
+          throw new IllegalStateException("Unexpected bytecode "
+              + getBytecodeName(bc) + " in inlined block");
+      }
+
+      i += getBytecodeLength(bc);
+    }
+  }
+
+  private void emitLocalAccess(final BytecodeGenerator bcGen, final boolean push,
+      final byte idx, final byte ctx) {
+    if (push) {
+      bcGen.emitPUSHLOCAL(this, idx, ctx);
+    } else {
+      bcGen.emitPOPLOCAL(this, idx, ctx);
+    }
+  }
+
+  /**
+   * After the block enclosing the given block was inlined, its variables
+   * live in the next outer context, and all contexts further out are one
+   * level closer.
+   */
+  private static void adaptAfterOuterInlined(final SMethod block, final int depth,
+      final byte[] localSlots, final byte[] argumentSlots) {
+    int i = 0;
+    while (i < block.getNumberOfBytecodes()) {
+      byte bc = block.getBytecode(i);
+
+      switch (bc) {
+        case PUSH_LOCAL:
+        case POP_LOCAL:
+        case PUSH_ARGUMENT:
+        case POP_ARGUMENT: {
+          byte idx = block.getBytecode(i + 1);
+          int ctx = block.getBytecode(i + 2);
+          if (ctx == depth) {
+            if (bc == PUSH_ARGUMENT || bc == POP_ARGUMENT) {
+              // arguments of inlined blocks are locals now
+              block.setBytecode(i, bc == PUSH_ARGUMENT ? PUSH_LOCAL : POP_LOCAL);
+              block.setBytecode(i + 1, argumentSlots[idx]);
+            } else {
+              block.setBytecode(i + 1, localSlots[idx]);
+            }
+          } else if (ctx > depth) {
+            block.setBytecode(i + 2, (byte) (ctx - 1));
+          }
+          break;
+        }
+        case PUSH_BLOCK:
+          adaptAfterOuterInlined((SMethod) block.getConstant(i), depth + 1,
+              localSlots, argumentSlots);
+          break;
+        default:
+          break;
+      }
+
+      i += getBytecodeLength(bc);
+    }
+  }
+
+  /**
+   * Tells whether a block nested in the given block accesses the block's
+   * arguments or locals. Inlining such a block into a loop would make all
+   * iterations share a single set of variables.
+   */
+  public static boolean hasCapturedVariables(final SMethod block) {
+    return accessesVariablesOfContext(block, 0);
+  }
+
+  private static boolean accessesVariablesOfContext(final SMethod block, final int depth) {
+    int i = 0;
+    while (i < block.getNumberOfBytecodes()) {
+      byte bc = block.getBytecode(i);
+
+      switch (bc) {
+        case PUSH_LOCAL:
+        case POP_LOCAL:
+        case PUSH_ARGUMENT:
+        case POP_ARGUMENT:
+          if (depth > 0 && block.getBytecode(i + 2) == depth) {
+            return true;
+          }
+          break;
+        case PUSH_BLOCK:
+          if (accessesVariablesOfContext((SMethod) block.getConstant(i), depth + 1)) {
+            return true;
+          }
+          break;
+        default:
+          break;
+      }
+
+      i += getBytecodeLength(bc);
+    }
+    return false;
+  }
+
+  /**
+   * Tells whether the given block assigns one of its own arguments. The
+   * argument of an inlined loop body is the counter of the loop, which the
+   * body must not change.
+   */
+  public static boolean assignsArguments(final SMethod block) {
+    int i = 0;
+    while (i < block.getNumberOfBytecodes()) {
+      byte bc = block.getBytecode(i);
+      if (bc == POP_ARGUMENT && block.getBytecode(i + 2) == 0) {
+        return true;
+      }
+      i += getBytecodeLength(bc);
+    }
+    return false;
+  }
+
+  /**
+   * Tells whether a block created by the given method needs the frame of the
+   * method itself, and not only a copy of its arguments. This is the case if
+   * a block accesses the locals of the method, or returns non-locally.
+   * Arguments that are assigned also need the frame.
+   */
+  private static boolean hasCapturingBlocks(final SMethod method) {
+    int i = 0;
+    while (i < method.getNumberOfBytecodes()) {
+      byte bc = method.getBytecode(i);
+
+      switch (bc) {
+        case POP_ARGUMENT:
+          return true;
+        case PUSH_BLOCK:
+          SMethod block = (SMethod) method.getConstant(i);
+          if (!block.isClean() && accessesFrame(block, 1)) {
+            return true;
+          }
+          break;
+        default:
+          break;
+      }
+
+      i += getBytecodeLength(bc);
+    }
+    return false;
+  }
+
+  private static boolean accessesFrame(final SMethod block, final int depth) {
+    int i = 0;
+    while (i < block.getNumberOfBytecodes()) {
+      byte bc = block.getBytecode(i);
+
+      switch (bc) {
+        case PUSH_LOCAL:
+        case POP_LOCAL:
+        case POP_ARGUMENT:
+          if (block.getBytecode(i + 2) == depth) {
+            return true;
+          }
+          break;
+        case RETURN_NON_LOCAL:
+          return true;
+        case PUSH_BLOCK:
+          if (accessesFrame((SMethod) block.getConstant(i), depth + 1)) {
+            return true;
+          }
+          break;
+        default:
+          break;
+      }
+
+      i += getBytecodeLength(bc);
+    }
+    return false;
+  }
+
+  /**
+   * Tells whether the given block, or a block nested in it, refers to the
+   * context the block is created in, that is, to outer variables, to self,
+   * to fields, or to the home method for a non-local return. Reading a
+   * global refers to self as well, since an unknown global is sent to self
+   * as #unknownGlobal:.
+   */
+  private static boolean accessesContext(final SMethod block, final int depth) {
+    int i = 0;
+    while (i < block.getNumberOfBytecodes()) {
+      byte bc = block.getBytecode(i);
+
+      switch (bc) {
+        case PUSH_LOCAL:
+        case POP_LOCAL:
+        case PUSH_ARGUMENT:
+        case POP_ARGUMENT:
+          if (block.getBytecode(i + 2) > depth) {
+            return true;
+          }
+          break;
+        case PUSH_FIELD:
+        case POP_FIELD:
+        case PUSH_GLOBAL:
+        case RETURN_NON_LOCAL:
+          return true;
+        case PUSH_BLOCK:
+          if (accessesContext((SMethod) block.getConstant(i), depth + 1)) {
+            return true;
+          }
+          break;
+        default:
+          break;
+      }
+
+      i += getBytecodeLength(bc);
+    }
+    return false;
+  }
+
   public byte findLiteralIndex(final SAbstractObject lit) {
     return (byte) literals.indexOf(lit);
   }
@@ -58,6 +58,11 @@ import static som.compiler.Symbol.Primitive;
 import static som.compiler.Symbol.STString;
 import static som.compiler.Symbol.Separator;
 import static som.compiler.Symbol.Star;
+import static som.interpreter.Bytecodes.JUMP;
+import static som.interpreter.Bytecodes.JUMP_IF_FALSE;
+import static som.interpreter.Bytecodes.JUMP_IF_GREATER;
+import static som.interpreter.Bytecodes.JUMP_IF_LESS;
+import static som.interpreter.Bytecodes.JUMP_IF_TRUE;
 
 import java.io.Reader;
 import java.math.BigInteger;
@@ -569,6 +574,7 @@ public class Parser {
         SMethod blockMethod = bgenc.assemble(universe);
         mgenc.addLiteral(blockMethod);
         bcGen.emitPUSHBLOCK(mgenc, blockMethod);
+        mgenc.markBlockLiteral();
         break;
       }
       default:
@@ -657,6 +663,10 @@ public class Parser {
 
     SSymbol msg = universe.symbolFor(kw.toString());
 
+    if (!superSend.get() && inlineControlStructure(mgenc, msg)) {
+      return;
+    }
+
     mgenc.addLiteralIfAbsent(msg);
 
     if (superSend.get()) {
@@ -666,6 +676,239 @@ public class Parser {
     }
   }
 
+  /**
+   * Replaces sends of the basic control structures with literal block
+   * arguments by jumps, and copies the bytecodes of the blocks into the
+   * current method. This avoids allocating the blocks and their frames.
+   * As in other Smalltalks, the blocks are no longer there to be sent with
+   * the message, so conditions that are not booleans get #mustBeBoolean sent
+   * instead, see {@code Interpreter.isJumpTaken}.
+   */
+  private boolean inlineControlStructure(final MethodGenerationContext mgenc,
+      final SSymbol msg) {
+    switch (msg.getEmbeddedString()) {
+      case "ifTrue:":
+        return inlineIfTrueOrIfFalse(mgenc, true);
+      case "ifFalse:":
+        return inlineIfTrueOrIfFalse(mgenc, false);
+      case "ifTrue:ifFalse:":
+        return inlineIfTrueIfFalse(mgenc, true);
+      case "ifFalse:ifTrue:":
+        return inlineIfTrueIfFalse(mgenc, false);
+      case "whileTrue:":
+        return inlineWhile(mgenc, true);
+      case "whileFalse:":
+        return inlineWhile(mgenc, false);
+      case "and:":
+        return inlineAndOr(mgenc, true);
+      case "or:":
+        return inlineAndOr(mgenc, false);
+      case "to:do:":
+        return inlineToDo(mgenc, true);
+      case "downTo:do:":
+        return inlineToDo(mgenc, false);
+      case "to:by:do:":
+        return inlineToByDo(mgenc);
+      case "timesRepeat:":
+        return inlineTimesRepeat(mgenc);
+      default:
+        return false;
+    }
+  }
+
+  private boolean inlineIfTrueOrIfFalse(final MethodGenerationContext mgenc,
+      final boolean ifTrue) {
+    if (mgenc.getPushedBlock(0, 1) == null) {
+      return false;
+    }
+
+    SMethod body = mgenc.removeLastPushBlock();
+
+    int jumpToElse = bcGen.emitJumpWithDummyOffset(mgenc,
+        ifTrue ? JUMP_IF_FALSE : JUMP_IF_TRUE);
+    mgenc.inlineBlock(body, null, bcGen, universe.nilObject);
+    int jumpToEnd = bcGen.emitJumpWithDummyOffset(mgenc, JUMP);
+
+    // the message evaluates to nil when the block is not evaluated
+    mgenc.patchJumpOffsetToPointToNextInstruction(jumpToElse);
+    emitPushNil(mgenc);
+    mgenc.patchJumpOffsetToPointToNextInstruction(jumpToEnd);
+    return true;
+  }
+
+  private boolean inlineIfTrueIfFalse(final MethodGenerationContext mgenc,
+      final boolean ifTrueFirst) {
+    if (mgenc.getPushedBlock(0, 1) == null || mgenc.getPushedBlock(1, 1) == null) {
+      return false;
+    }
+
+    SMethod second = mgenc.removeLastPushBlock();
+    SMethod first = mgenc.removeLastPushBlock();
+
+    int jumpToSecond = bcGen.emitJumpWithDummyOffset(mgenc,
+        ifTrueFirst ? JUMP_IF_FALSE : JUMP_IF_TRUE);
+    mgenc.inlineBlock(first, null, bcGen, universe.nilObject);
+    int jumpToEnd = bcGen.emitJumpWithDummyOffset(mgenc, JUMP);
+
+    mgenc.patchJumpOffsetToPointToNextInstruction(jumpToSecond);
+    mgenc.inlineBlock(second, null, bcGen, universe.nilObject);
+    mgenc.patchJumpOffsetToPointToNextInstruction(jumpToEnd);
+    return true;
+  }
+
+  private boolean inlineWhile(final MethodGenerationContext mgenc, final boolean whileTrue) {
+    SMethod body = mgenc.getPushedBlock(0, 1);
+    SMethod condition = mgenc.getPushedBlock(1, 1);
+    if (body == null || condition == null
+        || MethodGenerationContext.hasCapturedVariables(body)
+        || MethodGenerationContext.hasCapturedVariables(condition)) {
+      return false;
+    }
+
+    mgenc.removeLastPushBlock();
+    mgenc.removeLastPushBlock();
+
+    int loopBegin = mgenc.getNumberOfBytecodes();
+    mgenc.inlineBlock(condition, null, bcGen, universe.nilObject);
+    int jumpToEnd = bcGen.emitJumpWithDummyOffset(mgenc,
+        whileTrue ? JUMP_IF_FALSE : JUMP_IF_TRUE);
+
+    mgenc.inlineBlock(body, null, bcGen, universe.nilObject);
+    bcGen.emitPOP(mgenc);
+    bcGen.emitJUMPBACKWARD(mgenc, loopBegin);
+
+    // a loop evaluates to nil
+    mgenc.patchJumpOffsetToPointToNextInstruction(jumpToEnd);
+    emitPushNil(mgenc);
+    return true;
+  }
+
+  private boolean inlineAndOr(final MethodGenerationContext mgenc, final boolean isAnd) {
+    if (mgenc.getPushedBlock(0, 1) == null) {
+      return false;
+    }
+
+    SMethod argument = mgenc.removeLastPushBlock();
+
+    // if the receiver decides the result, it remains on the stack
+    bcGen.emitDUP(mgenc);
+    int jumpToEnd = bcGen.emitJumpWithDummyOffset(mgenc,
+        isAnd ? JUMP_IF_FALSE : JUMP_IF_TRUE);
+    bcGen.emitPOP(mgenc);
+    mgenc.inlineBlock(argument, null, bcGen, universe.nilObject);
+    mgenc.patchJumpOffsetToPointToNextInstruction(jumpToEnd);
+    return true;
+  }
+
+  /**
+   * Counted loops keep their counter and limit in locals of the current
+   * context, and evaluate to their receiver. The counter is the argument of
+   * the body, so bodies that assign their argument are not inlined.
+   */
+  private boolean inlineToDo(final MethodGenerationContext mgenc, final boolean upwards) {
+    SMethod body = mgenc.getPushedBlock(0, 2);
+    if (body == null || MethodGenerationContext.hasCapturedVariables(body)
+        || MethodGenerationContext.assignsArguments(body)) {
+      return false;
+    }
+
+    mgenc.removeLastPushBlock();
+
+    byte counter = mgenc.addInlinedLocal();
+    byte limit = mgenc.addInlinedLocal();
+
+    bcGen.emitPOPLOCAL(mgenc, limit, (byte) 0);
+    bcGen.emitDUP(mgenc);
+    bcGen.emitPOPLOCAL(mgenc, counter, (byte) 0);
+
+    int loopBegin = mgenc.getNumberOfBytecodes();
+    int jumpToEnd = bcGen.emitLoopTestWithDummyOffset(mgenc,
+        upwards ? JUMP_IF_GREATER : JUMP_IF_LESS, counter, limit);
+    mgenc.inlineBlock(body, new byte[] {0, counter}, bcGen, universe.nilObject);
+    bcGen.emitPOP(mgenc);
+    if (upwards) {
+      bcGen.emitINCLOCAL(mgenc, counter);
+    } else {
+      bcGen.emitDECLOCAL(mgenc, counter);
+    }
+    bcGen.emitJUMPBACKWARD(mgenc, loopBegin);
+
+    mgenc.patchJumpOffsetToPointToNextInstruction(jumpToEnd);
+    return true;
+  }
+
+  private boolean inlineToByDo(final MethodGenerationContext mgenc) {
+    SMethod body = mgenc.getPushedBlock(0, 2);
+    if (body == null || MethodGenerationContext.hasCapturedVariables(body)
+        || MethodGenerationContext.assignsArguments(body)) {
+      return false;
+    }
+
+    mgenc.removeLastPushBlock();
+
+    byte counter = mgenc.addInlinedLocal();
+    byte limit = mgenc.addInlinedLocal();
+    byte step = mgenc.addInlinedLocal();
+
+    bcGen.emitPOPLOCAL(mgenc, step, (byte) 0);
+    bcGen.emitPOPLOCAL(mgenc, limit, (byte) 0);
+    bcGen.emitDUP(mgenc);
+    bcGen.emitPOPLOCAL(mgenc, counter, (byte) 0);
+
+    int loopBegin = mgenc.getNumberOfBytecodes();
+    int jumpToEnd = bcGen.emitLoopTestWithDummyOffset(mgenc, JUMP_IF_GREATER,
+        counter, limit);
+    mgenc.inlineBlock(body, new byte[] {0, counter}, bcGen, universe.nilObject);
+    bcGen.emitPOP(mgenc);
+
+    // the step can be of any numeric type, so it is added with a regular send
+    SSymbol plus = universe.symbolFor("+");
+    mgenc.addLiteralIfAbsent(plus);
+    bcGen.emitPUSHLOCAL(mgenc, counter, (byte) 0);
+    bcGen.emitPUSHLOCAL(mgenc, step, (byte) 0);
+    bcGen.emitSEND(mgenc, plus);
+    bcGen.emitPOPLOCAL(mgenc, counter, (byte) 0);
+    bcGen.emitJUMPBACKWARD(mgenc, loopBegin);
+
+    mgenc.patchJumpOffsetToPointToNextInstruction(jumpToEnd);
+    return true;
+  }
+
+  private boolean inlineTimesRepeat(final MethodGenerationContext mgenc) {
+    SMethod body = mgenc.getPushedBlock(0, 1);
+    if (body == null || MethodGenerationContext.hasCapturedVariables(body)) {
+      return false;
+    }
+
+    mgenc.removeLastPushBlock();
+
+    byte counter = mgenc.addInlinedLocal();
+    byte limit = mgenc.addInlinedLocal();
+
+    bcGen.emitDUP(mgenc);
+    bcGen.emitPOPLOCAL(mgenc, limit, (byte) 0);
+    SInteger one = universe.newInteger(1);
+    mgenc.addLiteralIfAbsent(one);
+    bcGen.emitPUSHCONSTANT(mgenc, one);
+    bcGen.emitPOPLOCAL(mgenc, counter, (byte) 0);
+
+    int loopBegin = mgenc.getNumberOfBytecodes();
+    int jumpToEnd = bcGen.emitLoopTestWithDummyOffset(mgenc, JUMP_IF_GREATER,
+        counter, limit);
+    mgenc.inlineBlock(body, null, bcGen, universe.nilObject);
+    bcGen.emitPOP(mgenc);
+    bcGen.emitINCLOCAL(mgenc, counter);
+    bcGen.emitJUMPBACKWARD(mgenc, loopBegin);
+
+    mgenc.patchJumpOffsetToPointToNextInstruction(jumpToEnd);
+    return true;
+  }
+
+  private void emitPushNil(final MethodGenerationContext mgenc) {
+    mgenc.addLiteralIfAbsent(universe.nilObject);
+    bcGen.emitPUSHCONSTANT(mgenc, universe.nilObject);
+  }
+
   private void formula(final MethodGenerationContext mgenc) throws ProgramDefinitionError {
     Single<Boolean> superSend = new Single<Boolean>(false);
     binaryOperand(mgenc, superSend);
@@ -55,7 +55,8 @@ public class SourcecodeCompiler {
 
     parser = new Parser(new FileReader(fname), universe, fname);
 
-    som.vmobjects.SClass result = compile(systemClass, universe);
+    ClassGenerationContext cgc = new ClassGenerationContext(universe);
+    som.vmobjects.SClass result = compile(cgc, systemClass);
 
     som.vmobjects.SSymbol cname = result.getName();
     String cnameC = cname.getEmbeddedString();
@@ -65,6 +66,12 @@ public class SourcecodeCompiler {
           + " does not match class name " + cnameC);
     }
 
+    // Later runs can read the class from the cache instead of parsing it
+    ClassCache cache = universe.getClassCache();
+    if (cache != null) {
+      cache.store(fname, cgc);
+    }
+
     return result;
   }
 
@@ -73,14 +80,13 @@ public class SourcecodeCompiler {
       throws ProgramDefinitionError {
     parser = new Parser(new StringReader(stream), universe, "$string$");
 
-    som.vmobjects.SClass result = compile(systemClass, universe);
+    som.vmobjects.SClass result =
+        compile(new ClassGenerationContext(universe), systemClass);
     return result;
   }
 
-  private som.vmobjects.SClass compile(final som.vmobjects.SClass systemClass,
-      final Universe universe) throws ProgramDefinitionError {
-    ClassGenerationContext cgc = new ClassGenerationContext(universe);
-
+  private som.vmobjects.SClass compile(final ClassGenerationContext cgc,
+      final som.vmobjects.SClass systemClass) throws ProgramDefinitionError {
     som.vmobjects.SClass result = systemClass;
     parser.classdef(cgc);
 
@@ -47,6 +47,48 @@ public class Bytecodes {
   public static final byte SUPER_SEND       = 13;
   public static final byte RETURN_LOCAL     = 14;
   public static final byte RETURN_NON_LOCAL = 15;
+  public static final byte JUMP             = 16;
+  public static final byte JUMP_IF_TRUE     = 17;
+  public static final byte JUMP_IF_FALSE    = 18;
+  public static final byte JUMP_BACKWARD    = 19;
+  public static final byte JUMP_IF_GREATER  = 20;
+  public static final byte JUMP_IF_LESS     = 21;
+  public static final byte INC_LOCAL        = 22;
+  public static final byte DEC_LOCAL        = 23;
+
+  // Sends of binary messages that are computed directly for integers and
+  // doubles, as long as Integer and Double have the methods of the library
+  public static final byte ADD              = 24;
+  public static final byte SUBTRACT         = 25;
+  public static final byte MULTIPLY         = 26;
+  public static final byte LESS_THAN        = 27;
+  public static final byte GREATER_THAN     = 28;
+  public static final byte LESS_OR_EQUAL    = 29;
+  public static final byte GREATER_OR_EQUAL = 30;
+  public static final byte EQUAL            = 31;
+  public static final byte IDENTICAL        = 32;
+
+  // Quickened bytecodes, which the interpreter writes over the generic ones
+  // after their first execution. They have the same length and operands as
+  // the bytecode they replace, so that the bytecodes can still be walked
+  // one instruction at a time, and the compiler translates them like the
+  // generic ones.
+  public static final byte PUSH_LOCAL_0     = 33;
+  public static final byte PUSH_ARGUMENT_0  = 34;
+  public static final byte PUSH_SELF        = 35;
+  public static final byte PUSH_FIELD_0     = 36;
+  public static final byte POP_LOCAL_0      = 37;
+  public static final byte POP_FIELD_0      = 38;
+
+  // Superinstructions, which also execute the bytecode that follows them.
+  // That bytecode stays in place, since jumps may lead to it.
+  public static final byte RETURN_ARGUMENT  = 39;
+  public static final byte POP_PUSH_SELF    = 40;
+
+  // Variable access that keeps integers and doubles unboxed, for locals
+  // that are operands of arithmetic and comparisons
+  public static final byte PUSH_LOCAL_NUM   = 41;
+  public static final byte POP_LOCAL_NUM    = 42;
 
   private static final String[] PADDED_BYTECODE_NAMES = new String[] {
       "HALT            ", "DUP             ", "PUSH_LOCAL      ",
@@ -54,7 +96,16 @@ public class Bytecodes {
       "PUSH_CONSTANT   ", "PUSH_GLOBAL     ", "POP             ",
       "POP_LOCAL       ", "POP_ARGUMENT    ", "POP_FIELD       ",
       "SEND            ", "SUPER_SEND      ", "RETURN_LOCAL    ",
-      "RETURN_NON_LOCAL"
+      "RETURN_NON_LOCAL", "JUMP            ", "JUMP_IF_TRUE    ",
+      "JUMP_IF_FALSE   ", "JUMP_BACKWARD   ", "JUMP_IF_GREATER ",
+      "JUMP_IF_LESS    ", "INC_LOCAL       ", "DEC_LOCAL       ",
+      "ADD             ", "SUBTRACT        ", "MULTIPLY        ",
+      "LESS_THAN       ", "GREATER_THAN    ", "LESS_OR_EQUAL   ",
+      "GREATER_OR_EQUAL", "EQUAL           ", "IDENTICAL       ",
+      "PUSH_LOCAL_0    ", "PUSH_ARGUMENT_0 ", "PUSH_SELF       ",
+      "PUSH_FIELD_0    ", "POP_LOCAL_0     ", "POP_FIELD_0     ",
+      "RETURN_ARGUMENT ", "POP_PUSH_SELF   ", "PUSH_LOCAL_NUM  ",
+      "POP_LOCAL_NUM   "
   };
 
   private static final String[] BYTECODE_NAMES =
@@ -78,6 +129,75 @@ public class Bytecodes {
     return PADDED_BYTECODE_NAMES[bytecode];
   }
 
+  public static boolean isJump(final byte bytecode) {
+    return bytecode == JUMP || bytecode == JUMP_IF_TRUE || bytecode == JUMP_IF_FALSE
+        || bytecode == JUMP_BACKWARD;
+  }
+
+  public static boolean isLoopTest(final byte bytecode) {
+    return bytecode == JUMP_IF_GREATER || bytecode == JUMP_IF_LESS;
+  }
+
+  /**
+   * Returns the bytecode for a send of the given selector, which is one of
+   * the specialised bytecodes for arithmetic and comparisons, or SEND.
+   */
+  public static byte getSendBytecode(final String selector) {
+    switch (selector) {
+      case "+":
+        return ADD;
+      case "-":
+        return SUBTRACT;
+      case "*":
+        return MULTIPLY;
+      case "<":
+        return LESS_THAN;
+      case ">":
+        return GREATER_THAN;
+      case "<=":
+        return LESS_OR_EQUAL;
+      case ">=":
+        return GREATER_OR_EQUAL;
+      case "=":
+        return EQUAL;
+      case "==":
+        return IDENTICAL;
+      default:
+        return SEND;
+    }
+  }
+
+  public static boolean isSpecialisedSend(final byte bytecode) {
+    return ADD <= bytecode && bytecode <= IDENTICAL;
+  }
+
+  /**
+   * Returns the generic bytecode that a quickened bytecode replaced, or the
+   * bytecode itself. For a superinstruction, this is its first bytecode.
+   */
+  public static byte getGenericBytecode(final byte bytecode) {
+    switch (bytecode) {
+      case PUSH_LOCAL_0:
+      case PUSH_LOCAL_NUM:
+        return PUSH_LOCAL;
+      case PUSH_ARGUMENT_0:
+      case PUSH_SELF:
+      case RETURN_ARGUMENT:
+        return PUSH_ARGUMENT;
+      case PUSH_FIELD_0:
+        return PUSH_FIELD;
+      case POP_LOCAL_0:
+      case POP_LOCAL_NUM:
+        return POP_LOCAL;
+      case POP_FIELD_0:
+        return POP_FIELD;
+      case POP_PUSH_SELF:
+        return POP;
+      default:
+        return bytecode;
+    }
+  }
+
   public static int getBytecodeLength(byte bytecode) {
     // Return the length of the given bytecode
     return BYTECODE_LENGTH[bytecode];
@@ -100,7 +220,34 @@ public class Bytecodes {
       2, // SEND
       2, // SUPER_SEND
       1, // RETURN_LOCAL
-      1 // RETURN_NON_LOCAL
+      1, // RETURN_NON_LOCAL
+      3, // JUMP
+      3, // JUMP_IF_TRUE
+      3, // JUMP_IF_FALSE
+      3, // JUMP_BACKWARD
+      5, // JUMP_IF_GREATER
+      5, // JUMP_IF_LESS
+      2, // INC_LOCAL
+      2, // DEC_LOCAL
+      2, // ADD
+      2, // SUBTRACT
+      2, // MULTIPLY
+      2, // LESS_THAN
+      2, // GREATER_THAN
+      2, // LESS_OR_EQUAL
+      2, // GREATER_OR_EQUAL
+      2, // EQUAL
+      2, // IDENTICAL
+      3, // PUSH_LOCAL_0
+      3, // PUSH_ARGUMENT_0
+      3, // PUSH_SELF
+      2, // PUSH_FIELD_0
+      3, // POP_LOCAL_0
+      2, // POP_FIELD_0
+      3, // RETURN_ARGUMENT
+      1, // POP_PUSH_SELF
+      3, // PUSH_LOCAL_NUM
+      3 // POP_LOCAL_NUM
   };
 
 }
@@ -0,0 +1,319 @@
+package som.interpreter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+
+/**
+ * A minimal writer for JVM class files, which supports the instructions
+ * needed by the {@link JitCompiler}. The class files have version 49, which
+ * the JVM verifies by type inference, so that no stack map frames need to be
+ * computed.
+ */
+final class ClassFileWriter {
+
+  // JVM instructions
+  static final int ICONST_0      = 0x03;
+  static final int BIPUSH        = 0x10;
+  static final int SIPUSH        = 0x11;
+  static final int LDC_W         = 0x13;
+  static final int ALOAD_0       = 0x2a;
+  static final int ALOAD_1       = 0x2b;
+  static final int ALOAD_2       = 0x2c;
+  static final int IFEQ          = 0x99;
+  static final int IFNE          = 0x9a;
+  static final int GOTO          = 0xa7;
+  static final int LOOKUPSWITCH  = 0xab;
+  static final int RETURN        = 0xb1;
+  static final int INVOKEVIRTUAL = 0xb6;
+  static final int INVOKESPECIAL = 0xb7;
+  static final int INVOKESTATIC  = 0xb8;
+
+  static final int ACC_PUBLIC = 0x0001;
+  static final int ACC_FINAL  = 0x0010;
+  static final int ACC_SUPER  = 0x0020;
+
+  private static final int VERSION = 49;
+
+  private final ByteArrayOutputStream    constantPool = new ByteArrayOutputStream();
+  private final DataOutputStream         pool         = new DataOutputStream(constantPool);
+  private final HashMap<String, Integer> poolIndexes  = new HashMap<>();
+  private int                            poolCount    = 1;
+
+  private final ByteArrayOutputStream methodBytes = new ByteArrayOutputStream();
+  private final DataOutputStream      methods     = new DataOutputStream(methodBytes);
+  private int                         methodCount;
+
+  private final int thisClass;
+  private final int superClass;
+
+  ClassFileWriter(final String className, final String superClassName) {
+    thisClass = classRef(className);
+    superClass = classRef(superClassName);
+  }
+
+  int utf8(final String value) {
+    Integer index = poolIndexes.get("U" + value);
+    if (index != null) {
+      return index;
+    }
+    try {
+      pool.writeByte(1);
+      pool.writeUTF(value);
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+    return addPoolEntry("U" + value);
+  }
+
+  int classRef(final String internalName) {
+    Integer index = poolIndexes.get("C" + internalName);
+    if (index != null) {
+      return index;
+    }
+    int name = utf8(internalName);
+    writePoolEntry(7, name);
+    return addPoolEntry("C" + internalName);
+  }
+
+  int methodRef(final String owner, final String name, final String descriptor) {
+    String key = "M" + owner + "." + name + descriptor;
+    Integer index = poolIndexes.get(key);
+    if (index != null) {
+      return index;
+    }
+    int classIndex = classRef(owner);
+    int nameAndType = nameAndType(name, descriptor);
+    writePoolEntry(10, classIndex, nameAndType);
+    return addPoolEntry(key);
+  }
+
+  int integer(final int value) {
+    Integer index = poolIndexes.get("I" + value);
+    if (index != null) {
+      return index;
+    }
+    try {
+      pool.writeByte(3);
+      pool.writeInt(value);
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+    return addPoolEntry("I" + value);
+  }
+
+  private int nameAndType(final String name, final String descriptor) {
+    String key = "N" + name + ":" + descriptor;
+    Integer index = poolIndexes.get(key);
+    if (index != null) {
+      return index;
+    }
+    int nameIndex = utf8(name);
+    int descriptorIndex = utf8(descriptor);
+    writePoolEntry(12, nameIndex, descriptorIndex);
+    return addPoolEntry(key);
+  }
+
+  private void writePoolEntry(final int tag, final int... indexes) {
+    try {
+      pool.writeByte(tag);
+      for (int index : indexes) {
+        pool.writeShort(index);
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private int addPoolEntry(final String key) {
+    int index = poolCount++;
+    if (index > 0xFFFF) {
+      throw new IllegalStateException("Too many constants in class file");
+    }
+    poolIndexes.put(key, index);
+    return index;
+  }
+
+  void addMethod(final int access, final String name, final String descriptor,
+      final Code code, final int maxStack, final int maxLocals) {
+    byte[] bytes = code.toByteArray();
+    int nameIndex = utf8(name);
+    int descriptorIndex = utf8(descriptor);
+    int codeAttribute = utf8("Code");
+    try {
+      methods.writeShort(access);
+      methods.writeShort(nameIndex);
+      methods.writeShort(descriptorIndex);
+      methods.writeShort(1); // attributes
+      methods.writeShort(codeAttribute);
+      methods.writeInt(12 + bytes.length);
+      methods.writeShort(maxStack);
+      methods.writeShort(maxLocals);
+      methods.writeInt(bytes.length);
+      methods.write(bytes);
+      methods.writeShort(0); // exception table
+      methods.writeShort(0); // attributes of the code
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+    methodCount++;
+  }
+
+  byte[] toByteArray() {
+    ByteArrayOutputStream result = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(result);
+    try {
+      out.writeInt(0xCAFEBABE);
+      out.writeShort(0);
+      out.writeShort(VERSION);
+      out.writeShort(poolCount);
+      constantPool.writeTo(out);
+      out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+      out.writeShort(thisClass);
+      out.writeShort(superClass);
+      out.writeShort(0); // interfaces
+      out.writeShort(0); // fields
+      out.writeShort(methodCount);
+      methodBytes.writeTo(out);
+      out.writeShort(0); // attributes
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+    return result.toByteArray();
+  }
+
+  /**
+   * A position in the code of a method, which is the target of branches.
+   */
+  static final class Label {
+    private int position = -1;
+  }
+
+  /**
+   * The code of a single method. Branches to labels that are not yet marked
+   * are patched once the code is complete.
+   */
+  static final class Code {
+    private byte[] bytes = new byte[256];
+    private int    length;
+
+    private final List<int[]> fixups       = new ArrayList<>();
+    private final List<Label> fixupTargets = new ArrayList<>();
+
+    int getLength() {
+      return length;
+    }
+
+    void op(final int opcode) {
+      u1(opcode);
+    }
+
+    void op(final int opcode, final int u2Operand) {
+      u1(opcode);
+      u2(u2Operand);
+    }
+
+    void pushInt(final ClassFileWriter writer, final int value) {
+      if (0 <= value && value <= 5) {
+        op(ICONST_0 + value);
+      } else if (Byte.MIN_VALUE <= value && value <= Byte.MAX_VALUE) {
+        u1(BIPUSH);
+        u1(value);
+      } else if (Short.MIN_VALUE <= value && value <= Short.MAX_VALUE) {
+        op(SIPUSH, value);
+      } else {
+        op(LDC_W, writer.integer(value));
+      }
+    }
+
+    void mark(final Label label) {
+      label.position = length;
+    }
+
+    void branch(final int opcode, final Label target) {
+      int branchPosition = length;
+      u1(opcode);
+      addFixup(branchPosition, length, 2, target);
+      u2(0);
+    }
+
+    void lookupSwitch(final int[] keys, final Label[] targets, final Label defaultTarget) {
+      int switchPosition = length;
+      u1(LOOKUPSWITCH);
+      while (length % 4 != 0) {
+        u1(0);
+      }
+      addFixup(switchPosition, length, 4, defaultTarget);
+      u4(0);
+      u4(keys.length);
+      for (int i = 0; i < keys.length; i++) {
+        // keys need to be sorted in ascending order
+        assert i == 0 || keys[i - 1] < keys[i];
+        u4(keys[i]);
+        addFixup(switchPosition, length, 4, targets[i]);
+        u4(0);
+      }
+    }
+
+    private void addFixup(final int instruction, final int offsetPosition, final int size,
+        final Label target) {
+      fixups.add(new int[] {instruction, offsetPosition, size});
+      fixupTargets.add(target);
+    }
+
+    byte[] toByteArray() {
+      for (int i = 0; i < fixups.size(); i++) {
+        int[] fixup = fixups.get(i);
+        Label target = fixupTargets.get(i);
+        if (target.position < 0) {
+          throw new IllegalStateException("Branch to a label that was never marked");
+        }
+
+        int offset = target.position - fixup[0];
+        if (fixup[2] == 2) {
+          if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE) {
+            throw new IllegalStateException("Branch offset does not fit into 16 bits");
+          }
+          bytes[fixup[1]] = (byte) (offset >> 8);
+          bytes[fixup[1] + 1] = (byte) offset;
+        } else {
+          bytes[fixup[1]] = (byte) (offset >> 24);
+          bytes[fixup[1] + 1] = (byte) (offset >> 16);
+          bytes[fixup[1] + 2] = (byte) (offset >> 8);
+          bytes[fixup[1] + 3] = (byte) offset;
+        }
+      }
+
+      if (length > 0xFFFF) {
+        throw new IllegalStateException("Method code exceeds the size limit of the JVM");
+      }
+
+      byte[] result = new byte[length];
+      System.arraycopy(bytes, 0, result, 0, length);
+      return result;
+    }
+
+    private void u1(final int value) {
+      if (length == bytes.length) {
+        byte[] newBytes = new byte[bytes.length * 2];
+        System.arraycopy(bytes, 0, newBytes, 0, length);
+        bytes = newBytes;
+      }
+      bytes[length++] = (byte) value;
+    }
+
+    private void u2(final int value) {
+      u1(value >> 8);
+      u1(value);
+    }
+
+    private void u4(final int value) {
+      u2(value >> 16);
+      u2(value);
+    }
+  }
+}
@@ -0,0 +1,146 @@
+package som.interpreter;
+
+import som.compiler.ProgramDefinitionError;
+
+
+/**
+ * The JVM code of an {@link som.vmobjects.SMethod} generated by the
+ * {@link JitCompiler}.
+ *
+ * <p>
+ * The code runs on the method's frame, and starts at the frame's bytecode
+ * index. It returns to the interpreter as soon as another frame becomes the
+ * current one, for instance, because a send pushed a new frame, or because
+ * the method returned. It also returns when a primitive moved the frame to
+ * another bytecode, as #restart does. The interpreter then resumes the code
+ * at the frame's bytecode index.
+ *
+ * <p>
+ * The generated code calls the helpers below, which implement the
+ * bytecodes in terms of the interpreter.
+ */
+public abstract class CompiledMethod {
+
+  protected CompiledMethod() {}
+
+  public abstract void execute(Frame frame, Interpreter interpreter)
+      throws ProgramDefinitionError;
+
+  protected static void dup(final Frame frame) {
+    frame.push(frame.getStackElement(0));
+  }
+
+  protected static void pushLocal(final Frame frame, final int index, final int contextLevel) {
+    frame.push(frame.getLocal(index, contextLevel));
+  }
+
+  protected static void pushArgument(final Frame frame, final int index,
+      final int contextLevel) {
+    frame.push(frame.getArgument(index, contextLevel));
+  }
+
+  protected static void pushField(final Interpreter interpreter, final int bytecodeIndex) {
+    interpreter.doPushField(bytecodeIndex);
+  }
+
+  protected static void pushBlock(final Interpreter interpreter, final int bytecodeIndex)
+      throws ProgramDefinitionError {
+    interpreter.doPushBlock(bytecodeIndex);
+  }
+
+  protected static void pushConstant(final Frame frame, final int bytecodeIndex) {
+    frame.push(frame.getMethod().getConstant(bytecodeIndex));
+  }
+
+  protected static boolean pushGlobal(final Interpreter interpreter, final Frame frame,
+      final int bytecodeIndex, final int nextBytecodeIndex) {
+    // an unknown global is sent to self as #unknownGlobal:
+    frame.setBytecodeIndex(nextBytecodeIndex);
+    interpreter.doPushGlobal(bytecodeIndex);
+    return isLeft(interpreter, frame, nextBytecodeIndex);
+  }
+
+  protected static void pop(final Frame frame) {
+    frame.pop();
+  }
+
+  protected static void popLocal(final Frame frame, final int index, final int contextLevel) {
+    frame.setLocal(index, contextLevel, frame.pop());
+  }
+
+  protected static void popArgument(final Frame frame, final int index,
+      final int contextLevel) {
+    frame.setArgument(index, contextLevel, frame.pop());
+  }
+
+  protected static void popField(final Interpreter interpreter, final int bytecodeIndex) {
+    interpreter.doPopField(bytecodeIndex);
+  }
+
+  protected static boolean send(final Interpreter interpreter, final Frame frame,
+      final int bytecodeIndex, final int nextBytecodeIndex) {
+    frame.setBytecodeIndex(nextBytecodeIndex);
+    interpreter.doSend(bytecodeIndex);
+    return isLeft(interpreter, frame, nextBytecodeIndex);
+  }
+
+  protected static boolean superSend(final Interpreter interpreter, final Frame frame,
+      final int bytecodeIndex, final int nextBytecodeIndex) {
+    frame.setBytecodeIndex(nextBytecodeIndex);
+    interpreter.doSuperSend(bytecodeIndex);
+    return isLeft(interpreter, frame, nextBytecodeIndex);
+  }
+
+  protected static boolean specialisedSend(final Interpreter interpreter, final Frame frame,
+      final int bytecode, final int bytecodeIndex, final int nextBytecodeIndex) {
+    frame.setBytecodeIndex(nextBytecodeIndex);
+    interpreter.doSpecialisedSend((byte) bytecode, bytecodeIndex);
+    return isLeft(interpreter, frame, nextBytecodeIndex);
+  }
+
+  /**
+   * The code cannot continue after a send when another frame became the
+   * current one, or when a primitive like #restart moved the frame to
+   * another bytecode.
+   */
+  private static boolean isLeft(final Interpreter interpreter, final Frame frame,
+      final int nextBytecodeIndex) {
+    return interpreter.getFrame() != frame
+        || frame.getBytecodeIndex() != nextBytecodeIndex;
+  }
+
+  protected static void returnLocal(final Interpreter interpreter) {
+    interpreter.doReturnLocal();
+  }
+
+  protected static void returnNonLocal(final Interpreter interpreter, final Frame frame,
+      final int nextBytecodeIndex) {
+    frame.setBytecodeIndex(nextBytecodeIndex);
+    interpreter.doReturnNonLocal();
+  }
+
+  protected static boolean isJumpTaken(final Interpreter interpreter, final int bytecode,
+      final int bytecodeIndex) {
+    return interpreter.isJumpTaken((byte) bytecode, bytecodeIndex);
+  }
+
+  protected static boolean isLoopEnd(final Interpreter interpreter, final int test,
+      final int bytecodeIndex) {
+    return interpreter.isLoopEnd((byte) test, bytecodeIndex);
+  }
+
+  protected static boolean isWaitingForResult(final Interpreter interpreter,
+      final Frame frame) {
+    // operands that are not numbers or booleans get a message sent, which
+    // may have activated a method
+    return interpreter.getFrame() != frame;
+  }
+
+  protected static void incLocal(final Interpreter interpreter, final int bytecodeIndex) {
+    interpreter.doIncLocal(bytecodeIndex);
+  }
+
+  protected static void decLocal(final Interpreter interpreter, final int bytecodeIndex) {
+    interpreter.doDecLocal(bytecodeIndex);
+  }
+}
@@ -0,0 +1,92 @@
+package som.interpreter;
+
+import som.vmobjects.SAbstractObject;
+import som.vmobjects.SMethod;
+import som.vmobjects.SObject;
+
+
+/**
+ * The slots of the frames of an interpreter. Each active frame is a window
+ * into one contiguous array, which starts where the window of the previous
+ * frame ends. The frame objects are reused for each depth, so that a send
+ * does not allocate unless a block captures its frame.
+ */
+public final class ExecutionStack {
+
+  private static final int INITIAL_NUMBER_OF_SLOTS  = 64 * 1024;
+  private static final int INITIAL_NUMBER_OF_FRAMES = 1024;
+
+  private SAbstractObject[] slots  = new SAbstractObject[INITIAL_NUMBER_OF_SLOTS];
+  private Frame[]           frames = new Frame[INITIAL_NUMBER_OF_FRAMES];
+
+  // the unboxed integers and doubles of the slots, see Frame
+  private long[] primitiveSlots = new long[INITIAL_NUMBER_OF_SLOTS];
+
+  // the first slot of the window of the frame at each depth
+  private int[] bases = new int[INITIAL_NUMBER_OF_FRAMES];
+
+  // the first slot that is not used by an active frame
+  private int top;
+
+  public Frame push(final SObject nilObject, final Frame previousFrame,
+      final SMethod method, final Frame context) {
+    int depth = previousFrame == null ? 0 : previousFrame.getDepth() + 1;
+    if (depth == frames.length) {
+      growFrames();
+    }
+
+    int numberOfSlots = Frame.getNumberOfSlots(method);
+    if (top + numberOfSlots > slots.length) {
+      growSlots(top + numberOfSlots);
+    }
+
+    // materialized frames can outlive their activation, and are not reused
+    Frame frame = frames[depth];
+    if (frame == null || !frame.isOnExecutionStack()) {
+      frame = new Frame(depth);
+      frames[depth] = frame;
+    }
+
+    bases[depth] = top;
+    frame.activate(nilObject, previousFrame, context, method, slots, primitiveSlots, top);
+    top += numberOfSlots;
+    return frame;
+  }
+
+  public void pop(final Frame frame) {
+    // the slots above the frame become free, even if it was materialized
+    top = bases[frame.getDepth()];
+  }
+
+  private void growFrames() {
+    Frame[] newFrames = new Frame[frames.length * 2];
+    System.arraycopy(frames, 0, newFrames, 0, frames.length);
+    frames = newFrames;
+
+    int[] newBases = new int[bases.length * 2];
+    System.arraycopy(bases, 0, newBases, 0, bases.length);
+    bases = newBases;
+  }
+
+  private void growSlots(final int minimumLength) {
+    int length = slots.length * 2;
+    while (length < minimumLength) {
+      length *= 2;
+    }
+
+    SAbstractObject[] newSlots = new SAbstractObject[length];
+    System.arraycopy(slots, 0, newSlots, 0, top);
+    slots = newSlots;
+
+    long[] newPrimitiveSlots = new long[length];
+    System.arraycopy(primitiveSlots, 0, newPrimitiveSlots, 0, top);
+    primitiveSlots = newPrimitiveSlots;
+
+    // the frames that still use the old slots keep their indexes
+    for (Frame frame : frames) {
+      if (frame != null && frame.isOnExecutionStack()) {
+        frame.relocate(newSlots, newPrimitiveSlots);
+      }
+    }
+  }
+}
@@ -26,6 +26,9 @@ package som.interpreter;
 
 import som.vm.Universe;
 import som.vmobjects.SAbstractObject;
+import som.vmobjects.SClass;
+import som.vmobjects.SDouble;
+import som.vmobjects.SInteger;
 import som.vmobjects.SMethod;
 import som.vmobjects.SObject;
 
@@ -35,7 +38,7 @@ import som.vmobjects.SObject;
  * Frame layout:
  *
  * +-----------------+
- * | Arguments       | 0
+ * | Arguments       | <-- base
  * +-----------------+
  * | Local Variables | <-- localOffset
  * +-----------------+
@@ -43,19 +46,124 @@ import som.vmobjects.SObject;
  * | ...             |
  * +-----------------+
  * @formatter:on
+ *
+ * The slots of a frame are usually a window into the {@link ExecutionStack}
+ * of the interpreter, which reuses the frame and its slots once the frame is
+ * popped. Frames whose locals are captured by a block are materialized, and
+ * get slots of their own. Blocks that only read arguments get a copy of them
+ * instead.
+ *
+ * <p>
+ * Locals and stack slots can hold integers and doubles unboxed. Their value
+ * is then kept in a parallel array of longs, and the slot itself holds one
+ * of the markers {@link #UNBOXED_LONG} or {@link #UNBOXED_DOUBLE}. Values
+ * are boxed once they are read as objects, that is, once they escape into a
+ * send, a field, an argument, or an outer context.
  */
 public class Frame {
 
-  public Frame(final SObject nilObject, final Frame previousFrame,
-      final Frame context, final SMethod method, final long stackElements) {
+  private static final SAbstractObject UNBOXED_LONG   = new UnboxedMarker();
+  private static final SAbstractObject UNBOXED_DOUBLE = new UnboxedMarker();
+
+  Frame(final int depth) {
+    this.depth = depth;
+    this.onExecutionStack = true;
+  }
+
+  public static int getNumberOfSlots(final SMethod method) {
+    // Compute the maximum number of stack locations (including arguments,
+    // locals and extra buffer to support doesNotUnderstand)
+    return method.getNumberOfArguments()
+        + (int) method.getNumberOfLocals().getEmbeddedInteger()
+        + (int) method.getMaximumNumberOfStackElements().getEmbeddedInteger() + 2;
+  }
+
+  void activate(final SObject nilObject, final Frame previousFrame, final Frame context,
+      final SMethod method, final SAbstractObject[] slots, final long[] primitiveSlots,
+      final int base) {
+    // Reuse this frame for a new activation at the given base of the slots
     this.previousFrame = previousFrame;
     this.context = context;
+    this.homeFrame = context == null ? this : context.homeFrame;
     this.method = method;
-    this.stack = new SAbstractObject[(int) stackElements];
+    this.stack = slots;
+    this.primitives = primitiveSlots;
+    this.base = base;
+
+    resetStackPointer();
+    setBytecodeIndex(0);
+    argumentSnapshot = null;
+    waitingForResult = false;
+
+    // arguments and locals start out as nil, the arguments are copied later
+    for (int i = base; i <= stackPointer; i++) {
+      slots[i] = nilObject;
+    }
+  }
 
-    for (int i = 0; i < stackElements; i++) {
-      stack[i] = nilObject;
+  int getDepth() {
+    return depth;
+  }
+
+  boolean isOnExecutionStack() {
+    return onExecutionStack;
+  }
+
+  void relocate(final SAbstractObject[] slots, final long[] primitiveSlots) {
+    // The execution stack grew, the slots keep their indexes
+    stack = slots;
+    primitives = primitiveSlots;
+  }
+
+  /**
+   * Moves the slots of this frame from the execution stack into an array of
+   * its own, so that the frame can outlive its activation.
+   */
+  public void materialize() {
+    if (!onExecutionStack) {
+      return;
     }
+
+    int numberOfSlots = getNumberOfSlots(method);
+    SAbstractObject[] slots = new SAbstractObject[numberOfSlots];
+    System.arraycopy(stack, base, slots, 0, stackPointer - base + 1);
+    long[] primitiveSlots = new long[numberOfSlots];
+    System.arraycopy(primitives, base, primitiveSlots, 0, stackPointer - base + 1);
+
+    stack = slots;
+    primitives = primitiveSlots;
+    localOffset -= base;
+    stackPointer -= base;
+    base = 0;
+    onExecutionStack = false;
+  }
+
+  /**
+   * Returns a frame with a copy of the arguments and the context of this
+   * frame. Blocks that only read the arguments of their context use it, so
+   * that this frame does not need to be materialized. All these blocks of one
+   * activation share the copy.
+   */
+  public Frame getArgumentSnapshot() {
+    if (!onExecutionStack) {
+      return this;
+    }
+
+    if (argumentSnapshot == null) {
+      int numberOfArguments = method.getNumberOfArguments();
+      Frame snapshot = new Frame(depth);
+      snapshot.onExecutionStack = false;
+      snapshot.method = method;
+      snapshot.context = context;
+      snapshot.homeFrame = context == null ? snapshot : homeFrame;
+      snapshot.stack = new SAbstractObject[numberOfArguments];
+      System.arraycopy(stack, base, snapshot.stack, 0, numberOfArguments);
+      snapshot.localOffset = numberOfArguments;
+      snapshot.stackPointer = numberOfArguments - 1;
+      snapshot.bytecodeIndex = bytecodeIndex;
+      argumentSnapshot = snapshot;
+    }
+    return argumentSnapshot;
   }
 
   public Frame getPreviousFrame() {
@@ -100,16 +208,14 @@ public class Frame {
   }
 
   public Frame getOuterContext(final SAbstractObject nilObject) {
-    // Compute the outer context of this frame
-    Frame frame = this;
-
-    // Iterate through the context chain until null is reached
-    while (frame.hasContext()) {
-      frame = frame.getContext();
-    }
+    // The outer context is the frame of the method that the blocks of this
+    // frame are nested in
+    return homeFrame;
+  }
 
-    // Return the outer context
-    return frame;
+  public SAbstractObject getReceiver() {
+    // The receiver is the first argument of the outer context
+    return homeFrame.stack[homeFrame.base];
   }
 
   public SMethod getMethod() {
@@ -120,7 +226,7 @@ public class Frame {
     // Pop an object from the expression stack and return it
     int stackPointer = getStackPointer();
     setStackPointer(stackPointer - 1);
-    return stack[stackPointer];
+    return box(stackPointer);
   }
 
   public void push(final SAbstractObject value) {
@@ -142,7 +248,7 @@ public class Frame {
 
   public void resetStackPointer() {
     // arguments are stored in front of local variables
-    localOffset = getMethod().getNumberOfArguments();
+    localOffset = base + getMethod().getNumberOfArguments();
 
     // Set the stack pointer to its initial value thereby clearing the stack
     setStackPointer(localOffset
@@ -159,10 +265,18 @@ public class Frame {
     bytecodeIndex = value;
   }
 
+  boolean isWaitingForResult() {
+    return waitingForResult;
+  }
+
+  void setWaitingForResult(final boolean value) {
+    waitingForResult = value;
+  }
+
   public SAbstractObject getStackElement(final int index) {
     // Get the stack element with the given index
     // (an index of zero yields the top element)
-    return stack[getStackPointer() - index];
+    return box(getStackPointer() - index);
   }
 
   public void setStackElement(final int index, final SAbstractObject value) {
@@ -171,14 +285,18 @@ public class Frame {
     stack[getStackPointer() - index] = value;
   }
 
-  private SAbstractObject getLocal(final int index) {
-    return stack[localOffset + index];
+  SAbstractObject getLocal(final int index) {
+    return box(localOffset + index);
   }
 
-  private void setLocal(final int index, final SAbstractObject value) {
+  void setLocal(final int index, final SAbstractObject value) {
     stack[localOffset + index] = value;
   }
 
+  SAbstractObject getArgument(final int index) {
+    return stack[base + index];
+  }
+
   public SAbstractObject getLocal(final int index, final int contextLevel) {
     // Get the local with the given index in the given context
     return getContext(contextLevel).getLocal(index);
@@ -195,7 +313,7 @@ public class Frame {
     Frame context = getContext(contextLevel);
 
     // Get the argument with the given index
-    return context.stack[index];
+    return context.stack[context.base + index];
   }
 
   public void setArgument(final int index, final int contextLevel,
@@ -204,7 +322,7 @@ public class Frame {
     Frame context = getContext(contextLevel);
 
     // Set the argument with the given index to the given value
-    context.stack[index] = value;
+    context.stack[context.base + index] = value;
   }
 
   public void copyArgumentsFrom(final Frame frame) {
@@ -213,10 +331,96 @@ public class Frame {
     // - copy them into the argument area of the current frame
     int numArgs = getMethod().getNumberOfArguments();
     for (int i = 0; i < numArgs; ++i) {
-      stack[i] = frame.getStackElement(numArgs - 1 - i);
+      stack[base + i] = frame.getStackElement(numArgs - 1 - i);
     }
   }
 
+  /**
+   * Returns the object in the given slot, and boxes an unboxed value. The
+   * box replaces the value, so that it is allocated only once.
+   */
+  private SAbstractObject box(final int slot) {
+    SAbstractObject value = stack[slot];
+    if (value instanceof UnboxedMarker) {
+      value = value == UNBOXED_LONG ? SInteger.getInteger(primitives[slot])
+          : new SDouble(Double.longBitsToDouble(primitives[slot]));
+      stack[slot] = value;
+    }
+    return value;
+  }
+
+  int getStackSlot(final int index) {
+    return stackPointer - index;
+  }
+
+  int getLocalSlot(final int index) {
+    return localOffset + index;
+  }
+
+  boolean isLong(final int slot) {
+    SAbstractObject value = stack[slot];
+    return value == UNBOXED_LONG || value instanceof SInteger;
+  }
+
+  boolean isNumber(final int slot) {
+    SAbstractObject value = stack[slot];
+    return value == UNBOXED_DOUBLE || value == UNBOXED_LONG || value instanceof SDouble
+        || value instanceof SInteger;
+  }
+
+  long getLong(final int slot) {
+    SAbstractObject value = stack[slot];
+    if (value == UNBOXED_LONG) {
+      return primitives[slot];
+    }
+    return ((SInteger) value).getEmbeddedInteger();
+  }
+
+  double getDouble(final int slot) {
+    SAbstractObject value = stack[slot];
+    if (value == UNBOXED_DOUBLE) {
+      return Double.longBitsToDouble(primitives[slot]);
+    } else if (value == UNBOXED_LONG) {
+      return primitives[slot];
+    } else if (value instanceof SInteger) {
+      return ((SInteger) value).getEmbeddedInteger();
+    }
+    return ((SDouble) value).getEmbeddedDouble();
+  }
+
+  void setLong(final int slot, final long value) {
+    stack[slot] = UNBOXED_LONG;
+    primitives[slot] = value;
+  }
+
+  void setDouble(final int slot, final double value) {
+    stack[slot] = UNBOXED_DOUBLE;
+    primitives[slot] = Double.doubleToRawLongBits(value);
+  }
+
+  /**
+   * Copies a slot without boxing its value.
+   */
+  void copySlot(final int from, final int to) {
+    stack[to] = stack[from];
+    primitives[to] = primitives[from];
+  }
+
+  void dup() {
+    stackPointer++;
+    copySlot(stackPointer - 1, stackPointer);
+  }
+
+  void pushLocalUnboxed(final int index) {
+    stackPointer++;
+    copySlot(localOffset + index, stackPointer);
+  }
+
+  void popLocalUnboxed(final int index) {
+    copySlot(stackPointer, localOffset + index);
+    stackPointer--;
+  }
+
   public void printStackTrace(final SAbstractObject nilObject) {
     // Print a stack trace starting in this frame
     Universe.print(getMethod().getHolder().getName().getEmbeddedString());
@@ -231,11 +435,39 @@ public class Frame {
   private int stackPointer;
   private int bytecodeIndex;
 
-  // the offset at which local variables start
+  // set while the bytecode at the bytecode index waits for the result of a
+  // message it sent for operands that are not numbers
+  private boolean waitingForResult;
+
+  // the offsets at which the frame and its local variables start
+  private int base;
   private int localOffset;
 
-  private final SMethod           method;
-  private final Frame             context;
-  private Frame                   previousFrame;
-  private final SAbstractObject[] stack;
+  private SMethod           method;
+  private Frame             context;
+  private Frame             previousFrame;
+
+  // the end of the context chain, known when the frame is activated, since
+  // the contexts of blocks are never reused
+  private Frame             homeFrame;
+  private SAbstractObject[] stack;
+  private long[]            primitives;
+
+  // the copy of the arguments for the blocks of the current activation
+  private Frame argumentSnapshot;
+
+  // the number of frames below this one on the execution stack
+  private int     depth;
+  private boolean onExecutionStack;
+
+  /**
+   * Marks a slot whose value is unboxed. It is never visible outside of the
+   * frame.
+   */
+  private static final class UnboxedMarker extends SAbstractObject {
+    @Override
+    public SClass getSOMClass(final Universe universe) {
+      throw new IllegalStateException("Unboxed value escaped from its frame");
+    }
+  }
 }
@@ -0,0 +1,91 @@
+package som.interpreter;
+
+import som.vmobjects.SClass;
+import som.vmobjects.SInvokable;
+import som.vmobjects.SSymbol;
+
+
+/**
+ * The polymorphic inline cache of a send site. It holds up to
+ * {@link #DEGREE} receiver classes with their invokables. A site that sees
+ * more receiver classes becomes megamorphic, drops its entries, and from
+ * then on uses the global {@link LookupCache} directly. An entry is dropped
+ * once its class has a new {@link SClass#getVersion() version}.
+ */
+public final class InlineCache {
+
+  public static final int DEGREE = Integer.getInteger("som.inlineCacheDegree", 8);
+
+  private final SClass[]     classes    = new SClass[DEGREE];
+  private final SInvokable[] invokables = new SInvokable[DEGREE];
+  private final int[]        versions   = new int[DEGREE];
+  private int                size;
+  private boolean            megamorphic;
+
+  // Statistics of the send site
+  private long hits;
+  private long misses;
+
+  public SInvokable lookup(final SClass receiverClass, final SSymbol selector,
+      final LookupCache lookupCache) {
+    for (int i = 0; i < size; i++) {
+      if (classes[i] == receiverClass) {
+        if (versions[i] == receiverClass.getVersion()) {
+          hits++;
+          return invokables[i];
+        }
+
+        // methods were installed in the class or one of its superclasses
+        removeEntry(i);
+        break;
+      }
+    }
+
+    misses++;
+    SInvokable invokable = lookupCache.lookup(receiverClass, selector);
+    if (invokable == null || megamorphic) {
+      return invokable;
+    }
+
+    if (size < DEGREE) {
+      classes[size] = receiverClass;
+      invokables[size] = invokable;
+      versions[size] = receiverClass.getVersion();
+      size++;
+    } else {
+      megamorphic = true;
+      for (int i = 0; i < size; i++) {
+        classes[i] = null;
+        invokables[i] = null;
+      }
+      size = 0;
+    }
+    return invokable;
+  }
+
+  private void removeEntry(final int index) {
+    // The last entry takes the place of the removed one
+    size--;
+    classes[index] = classes[size];
+    invokables[index] = invokables[size];
+    versions[index] = versions[size];
+    classes[size] = null;
+    invokables[size] = null;
+  }
+
+  public int getNumberOfEntries() {
+    return size;
+  }
+
+  public boolean isMegamorphic() {
+    return megamorphic;
+  }
+
+  public long getHits() {
+    return hits;
+  }
+
+  public long getMisses() {
+    return misses;
+  }
+}
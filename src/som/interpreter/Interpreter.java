@@ -25,14 +25,21 @@
 
 package som.interpreter;
 
+import java.util.Arrays;
+
 import som.compiler.ProgramDefinitionError;
+import som.vm.Association;
 import som.vm.Universe;
 import som.vmobjects.SAbstractObject;
 import som.vmobjects.SBlock;
 import som.vmobjects.SClass;
+import som.vmobjects.SDouble;
+import som.vmobjects.SInteger;
 import som.vmobjects.SInvokable;
 import som.vmobjects.SMethod;
+import som.vmobjects.SNumber;
 import som.vmobjects.SObject;
+import som.vmobjects.SPrimitive;
 import som.vmobjects.SSymbol;
 
 import static som.interpreter.Bytecodes.*;
@@ -40,48 +47,212 @@ import static som.interpreter.Bytecodes.*;
 
 public class Interpreter {
 
+  // The selectors of the specialised sends
+  private static final String[] SPECIALISED_SELECTORS =
+      {"+", "-", "*", "<", ">", "<=", ">=", "=", "=="};
+
   private final Universe universe;
 
   public Interpreter(final Universe universe) {
     this.universe = universe;
+    this.jitCompiler = new JitCompiler();
+    this.executionStack = new ExecutionStack();
+  }
+
+  public ExecutionStack getExecutionStack() {
+    return executionStack;
+  }
+
+  Universe getUniverse() {
+    return universe;
+  }
+
+  /**
+   * Keeps all methods interpreted, instead of compiling hot methods to JVM
+   * bytecode.
+   */
+  public void disableCompilation() {
+    jitCompiler = null;
+  }
+
+  /**
+   * Keeps the results of integer and double arithmetic unboxed in the slots
+   * of the frame, until they escape.
+   */
+  public void useTypedSlots() {
+    typedSlots = true;
+  }
+
+  /**
+   * Records the methods that Integer and Double have for the selectors of
+   * the specialised sends, once the system classes are loaded. The sends
+   * compute integers and doubles directly only as long as these classes
+   * have the same methods.
+   */
+  public void recordNumberMethods() {
+    integerMethods = lookupSpecialisedSends(universe.integerClass);
+    doubleMethods = lookupSpecialisedSends(universe.doubleClass);
+    integerVersion = universe.integerClass.getVersion();
+    doubleVersion = universe.doubleClass.getVersion();
+    numberSendsSpecialised = true;
+  }
+
+  private SInvokable[] lookupSpecialisedSends(final SClass clazz) {
+    SInvokable[] result = new SInvokable[SPECIALISED_SELECTORS.length];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = clazz.lookupInvokable(universe.symbolFor(SPECIALISED_SELECTORS[i]));
+    }
+    return result;
+  }
+
+  /**
+   * Tells whether integers and doubles still have the recorded methods for
+   * the specialised sends. Installing other methods in Integer, Double, or
+   * their super classes changes their versions, but keeps the sends
+   * specialised.
+   */
+  private boolean areNumberSendsSpecialised() {
+    SClass integerClass = universe.integerClass;
+    SClass doubleClass = universe.doubleClass;
+    if (integerClass.getVersion() != integerVersion
+        || doubleClass.getVersion() != doubleVersion) {
+      integerVersion = integerClass.getVersion();
+      doubleVersion = doubleClass.getVersion();
+      numberSendsSpecialised = integerMethods != null
+          && Arrays.equals(lookupSpecialisedSends(integerClass), integerMethods)
+          && Arrays.equals(lookupSpecialisedSends(doubleClass), doubleMethods);
+    }
+    return numberSendsSpecialised;
   }
 
   private void doDup() {
     // Handle the DUP bytecode
-    getFrame().push(getFrame().getStackElement(0));
+    getFrame().dup();
   }
 
   private void doPushLocal(final int bytecodeIndex) {
     // Handle the PUSH LOCAL bytecode
+    int contextLevel = getMethod().getBytecode(bytecodeIndex + 2);
     getFrame().push(
-        getFrame().getLocal(getMethod().getBytecode(bytecodeIndex + 1),
-            getMethod().getBytecode(bytecodeIndex + 2)));
+        getFrame().getLocal(getMethod().getBytecode(bytecodeIndex + 1), contextLevel));
+
+    // A local of the current frame does not need the context chain, and
+    // stays unboxed if it is an operand of arithmetic or a comparison, or
+    // is assigned to another local
+    if (contextLevel == 0) {
+      getMethod().setBytecode(bytecodeIndex,
+          typedSlots && isUnboxedOperand(bytecodeIndex + 3) ? PUSH_LOCAL_NUM
+              : PUSH_LOCAL_0);
+    }
+  }
+
+  private boolean isUnboxedOperand(final int nextBytecodeIndex) {
+    // The local is either the right operand, or the left one of a send
+    // whose right operand is pushed by the next bytecode
+    byte next = getGenericBytecode(getMethod().getBytecode(nextBytecodeIndex));
+    if (isSpecialisedSend(next) || next == DUP || next == POP_LOCAL) {
+      return true;
+    }
+    if (next != PUSH_LOCAL && next != PUSH_ARGUMENT && next != PUSH_FIELD
+        && next != PUSH_CONSTANT) {
+      return false;
+    }
+    return isSpecialisedSend(
+        getMethod().getBytecode(nextBytecodeIndex + getBytecodeLength(next)));
+  }
+
+  private void doPushLocal0(final int bytecodeIndex) {
+    // Handle the PUSH LOCAL 0 bytecode
+    getFrame().push(getFrame().getLocal(getMethod().getBytecode(bytecodeIndex + 1)));
+  }
+
+  private void doPushLocalNum(final int bytecodeIndex) {
+    // Handle the PUSH LOCAL NUM bytecode
+    getFrame().pushLocalUnboxed(getMethod().getBytecode(bytecodeIndex + 1));
   }
 
   private void doPushArgument(final int bytecodeIndex) {
     // Handle the PUSH ARGUMENT bytecode
-    getFrame().push(
-        getFrame().getArgument(getMethod().getBytecode(bytecodeIndex + 1),
-            getMethod().getBytecode(bytecodeIndex + 2)));
+    int argumentIndex = getMethod().getBytecode(bytecodeIndex + 1);
+    int contextLevel = getMethod().getBytecode(bytecodeIndex + 2);
+    getFrame().push(getFrame().getArgument(argumentIndex, contextLevel));
+
+    // An argument of the current frame does not need the context chain, and
+    // is often returned right away
+    if (contextLevel == 0) {
+      if (getMethod().getBytecode(bytecodeIndex + 3) == RETURN_LOCAL) {
+        getMethod().setBytecode(bytecodeIndex, RETURN_ARGUMENT);
+      } else {
+        getMethod().setBytecode(bytecodeIndex,
+            argumentIndex == 0 ? PUSH_SELF : PUSH_ARGUMENT_0);
+      }
+    }
+  }
+
+  private void doPushArgument0(final int bytecodeIndex) {
+    // Handle the PUSH ARGUMENT 0 bytecode
+    getFrame().push(getFrame().getArgument(getMethod().getBytecode(bytecodeIndex + 1)));
+  }
+
+  private void doPushSelf() {
+    // Handle the PUSH SELF bytecode
+    getFrame().push(getFrame().getArgument(0));
+  }
+
+  private void doReturnArgument(final int bytecodeIndex) {
+    // Handle the RETURN ARGUMENT bytecode, which includes the RETURN LOCAL
+    // that follows it
+    doPushArgument0(bytecodeIndex);
+    doReturnLocal();
   }
 
-  private void doPushField(final int bytecodeIndex) {
+  void doPushField(final int bytecodeIndex) {
     // Handle the PUSH FIELD bytecode
     int fieldIndex = getMethod().getBytecode(bytecodeIndex + 1);
 
     // Push the field with the computed index onto the stack
     getFrame().push(((SObject) getSelf()).getField(fieldIndex));
+
+    // Without a context, self is the first argument of the current frame
+    if (!getFrame().hasContext()) {
+      getMethod().setBytecode(bytecodeIndex, PUSH_FIELD_0);
+    }
   }
 
-  private void doPushBlock(final int bytecodeIndex) throws ProgramDefinitionError {
+  private void doPushField0(final int bytecodeIndex) {
+    // Handle the PUSH FIELD 0 bytecode
+    int fieldIndex = getMethod().getBytecode(bytecodeIndex + 1);
+    getFrame().push(((SObject) getFrame().getArgument(0)).getField(fieldIndex));
+  }
+
+  void doPushBlock(final int bytecodeIndex) throws ProgramDefinitionError {
     // Handle the PUSH BLOCK bytecode
     SMethod blockMethod = (SMethod) getMethod().getConstant(bytecodeIndex);
 
-    // Push a new block with the current getFrame() as context onto the
-    // stack
-    getFrame().push(
-        universe.newBlock(blockMethod, getFrame(),
-            blockMethod.getNumberOfArguments()));
+    // A clean block does not need the current frame, and can be shared by
+    // all its evaluations
+    if (blockMethod.isClean()) {
+      SBlock block = blockMethod.getCleanBlock();
+      if (block == null) {
+        block = universe.newBlock(blockMethod, null);
+        blockMethod.setCleanBlock(block);
+      }
+      getFrame().push(block);
+      return;
+    }
+
+    // The block may outlive the activation of the current frame. If the
+    // blocks of the method only read its arguments, a copy of them is enough
+    Frame context;
+    if (getMethod().hasCapturingBlocks()) {
+      getFrame().materialize();
+      context = getFrame();
+    } else {
+      context = getFrame().getArgumentSnapshot();
+    }
+
+    // Push a new block with the context onto the stack
+    getFrame().push(universe.newBlock(blockMethod, context));
   }
 
   private void doPushConstant(final int bytecodeIndex) {
@@ -89,12 +260,18 @@ public class Interpreter {
     getFrame().push(getMethod().getConstant(bytecodeIndex));
   }
 
-  private void doPushGlobal(final int bytecodeIndex) {
+  void doPushGlobal(final int bytecodeIndex) {
     // Handle the PUSH GLOBAL bytecode
     SSymbol globalName = (SSymbol) getMethod().getConstant(bytecodeIndex);
 
-    // Get the global from the universe
-    SAbstractObject global = universe.getGlobal(globalName);
+    // Get the cell of the global, which the method keeps after the first
+    // lookup in the universe
+    Association association = getMethod().getCachedGlobal(bytecodeIndex);
+    if (association == null) {
+      association = universe.getGlobalAssociation(globalName);
+      getMethod().cacheGlobal(bytecodeIndex, association);
+    }
+    SAbstractObject global = association.getValue();
 
     if (global != null) {
       // Push the global onto the stack
@@ -105,15 +282,53 @@ public class Interpreter {
     }
   }
 
-  private void doPop() {
+  private void doPop(final int bytecodeIndex) {
     // Handle the POP bytecode
     getFrame().pop();
+
+    // Statements that are followed by a statement or a return of self
+    if (isPushSelf(bytecodeIndex + 1)) {
+      getMethod().setBytecode(bytecodeIndex, POP_PUSH_SELF);
+    }
+  }
+
+  private boolean isPushSelf(final int bytecodeIndex) {
+    // The bytecode may already be quickened
+    byte bytecode = getMethod().getBytecode(bytecodeIndex);
+    return getGenericBytecode(bytecode) == PUSH_ARGUMENT
+        && getMethod().getBytecode(bytecodeIndex + 1) == 0
+        && getMethod().getBytecode(bytecodeIndex + 2) == 0;
+  }
+
+  private void doPopPushSelf(final int bytecodeIndex) {
+    // Handle the POP PUSH SELF bytecode, which includes the PUSH ARGUMENT
+    // that follows it
+    getFrame().setStackElement(0, getFrame().getArgument(0));
+    getFrame().setBytecodeIndex(bytecodeIndex + 1 + getBytecodeLength(PUSH_ARGUMENT));
   }
 
   private void doPopLocal(final int bytecodeIndex) {
     // Handle the POP LOCAL bytecode
-    getFrame().setLocal(getMethod().getBytecode(bytecodeIndex + 1),
-        getMethod().getBytecode(bytecodeIndex + 2), getFrame().pop());
+    int contextLevel = getMethod().getBytecode(bytecodeIndex + 2);
+    if (contextLevel == 0) {
+      // A number stays unboxed in a local of the current frame
+      getMethod().setBytecode(bytecodeIndex,
+          typedSlots && getFrame().isNumber(getFrame().getStackSlot(0)) ? POP_LOCAL_NUM
+              : POP_LOCAL_0);
+    }
+
+    getFrame().setLocal(getMethod().getBytecode(bytecodeIndex + 1), contextLevel,
+        getFrame().pop());
+  }
+
+  private void doPopLocal0(final int bytecodeIndex) {
+    // Handle the POP LOCAL 0 bytecode
+    getFrame().setLocal(getMethod().getBytecode(bytecodeIndex + 1), getFrame().pop());
+  }
+
+  private void doPopLocalNum(final int bytecodeIndex) {
+    // Handle the POP LOCAL NUM bytecode
+    getFrame().popLocalUnboxed(getMethod().getBytecode(bytecodeIndex + 1));
   }
 
   private void doPopArgument(final int bytecodeIndex) {
@@ -122,22 +337,43 @@ public class Interpreter {
         getMethod().getBytecode(bytecodeIndex + 2), getFrame().pop());
   }
 
-  private void doPopField(final int bytecodeIndex) {
+  void doPopField(final int bytecodeIndex) {
     // Handle the POP FIELD bytecode
     int fieldIndex = getMethod().getBytecode(bytecodeIndex + 1);
 
     // Set the field with the computed index to the value popped from the stack
     ((SObject) getSelf()).setField(fieldIndex, getFrame().pop());
+
+    if (!getFrame().hasContext()) {
+      getMethod().setBytecode(bytecodeIndex, POP_FIELD_0);
+    }
   }
 
-  private void doSuperSend(final int bytecodeIndex) {
+  private void doPopField0(final int bytecodeIndex) {
+    // Handle the POP FIELD 0 bytecode
+    int fieldIndex = getMethod().getBytecode(bytecodeIndex + 1);
+    ((SObject) getFrame().getArgument(0)).setField(fieldIndex, getFrame().pop());
+  }
+
+  void doSuperSend(final int bytecodeIndex) {
     // Handle the SUPER SEND bytecode
     SSymbol signature = (SSymbol) getMethod().getConstant(bytecodeIndex);
 
     // Send the message
-    // Lookup the invokable with the given signature
-    SClass holderSuper = (SClass) getMethod().getHolder().getSuperClass();
-    SInvokable invokable = holderSuper.lookupInvokable(signature);
+    // The invokable only depends on the holder of the method, and is cached
+    // until a method is installed in the super class of the holder or above
+    SMethod method = getMethod();
+    SClass holderSuper = (SClass) method.getHolder().getSuperClass();
+    SInvokable invokable =
+        method.getCachedSuperSend(bytecodeIndex, holderSuper.getVersion());
+
+    if (invokable == null) {
+      // Lookup the invokable with the given signature
+      invokable = universe.getLookupCache().lookup(holderSuper, signature);
+      if (invokable != null) {
+        method.cacheSuperSend(bytecodeIndex, invokable, holderSuper.getVersion());
+      }
+    }
 
     if (invokable != null) {
       // Invoke the invokable in the current frame
@@ -153,7 +389,7 @@ public class Interpreter {
     }
   }
 
-  private void doReturnLocal() {
+  void doReturnLocal() {
     // Handle the RETURN LOCAL bytecode
     SAbstractObject result = getFrame().pop();
 
@@ -161,7 +397,7 @@ public class Interpreter {
     popFrameAndPushResult(result);
   }
 
-  private void doReturnNonLocal() {
+  void doReturnNonLocal() {
     // Handle the RETURN NON LOCAL bytecode
     SAbstractObject result = getFrame().pop();
 
@@ -175,8 +411,7 @@ public class Interpreter {
       // the "sender" will be the surrounding block and not the object
       // that actually sent the 'value' message.
       SBlock block = (SBlock) getFrame().getArgument(0, 0);
-      SAbstractObject sender =
-          getFrame().getPreviousFrame().getOuterContext(universe.nilObject).getArgument(0, 0);
+      SAbstractObject sender = getFrame().getPreviousFrame().getReceiver();
 
       // pop the frame of the currently executing block...
       popFrame();
@@ -202,7 +437,379 @@ public class Interpreter {
     popFrameAndPushResult(result);
   }
 
-  private void doSend(final int bytecodeIndex) {
+  private void doJump(final int bytecodeIndex) {
+    // Handle the JUMP bytecode, offsets are relative to the jump itself
+    getFrame().setBytecodeIndex(bytecodeIndex + getMethod().getJumpOffset(bytecodeIndex));
+  }
+
+  private void doJumpIfTrue(final int bytecodeIndex) {
+    // Handle the JUMP IF TRUE bytecode
+    if (isJumpTaken(JUMP_IF_TRUE, bytecodeIndex)) {
+      doJump(bytecodeIndex);
+    }
+  }
+
+  private void doJumpIfFalse(final int bytecodeIndex) {
+    // Handle the JUMP IF FALSE bytecode
+    if (isJumpTaken(JUMP_IF_FALSE, bytecodeIndex)) {
+      doJump(bytecodeIndex);
+    }
+  }
+
+  /**
+   * Pops the condition of a conditional jump, and tells whether the jump is
+   * taken. Like in other Smalltalks, a condition that is not a boolean gets
+   * #mustBeBoolean sent, and the answer is tested instead. Returns false if
+   * the send activated a method. An answer that is not a boolean either is
+   * an error, after which the jump is taken, so that the inlined block is
+   * skipped or the loop is left.
+   */
+  boolean isJumpTaken(final byte bytecode, final int bytecodeIndex) {
+    Frame frame = getFrame();
+    SAbstractObject condition = frame.isWaitingForResult() ? null : frame.pop();
+    if (condition != universe.trueObject && condition != universe.falseObject) {
+      condition = sendForResult("mustBeBoolean", bytecodeIndex, condition);
+      if (condition == null) {
+        return false;
+      }
+      if (condition != universe.trueObject && condition != universe.falseObject) {
+        universe.errorExit("mustBeBoolean did not answer a boolean");
+        return true;
+      }
+    }
+    return condition == (bytecode == JUMP_IF_TRUE ? universe.trueObject
+        : universe.falseObject);
+  }
+
+  private void doJumpBackward(final int bytecodeIndex) {
+    // Handle the JUMP BACKWARD bytecode
+    if (jitCompiler != null) {
+      jitCompiler.countBackEdge(getMethod());
+    }
+    getFrame().setBytecodeIndex(bytecodeIndex - getMethod().getJumpOffset(bytecodeIndex));
+  }
+
+  private void doJumpIfGreater(final int bytecodeIndex) {
+    // Handle the JUMP IF GREATER bytecode, which leaves a counted loop once
+    // the counter exceeds the limit
+    Frame frame = getFrame();
+    int counterSlot = frame.getLocalSlot(getMethod().getBytecode(bytecodeIndex + 1));
+    int limitSlot = frame.getLocalSlot(getMethod().getBytecode(bytecodeIndex + 2));
+    if (frame.isLong(counterSlot) && frame.isLong(limitSlot)
+        && areNumberSendsSpecialised()) {
+      if (frame.getLong(counterSlot) > frame.getLong(limitSlot)) {
+        doJump(bytecodeIndex);
+      }
+      return;
+    }
+
+    if (isLoopEnd(JUMP_IF_GREATER, bytecodeIndex)) {
+      doJump(bytecodeIndex);
+    }
+  }
+
+  private void doJumpIfLess(final int bytecodeIndex) {
+    // Handle the JUMP IF LESS bytecode, which leaves a counted loop once
+    // the counter falls below the limit
+    Frame frame = getFrame();
+    int counterSlot = frame.getLocalSlot(getMethod().getBytecode(bytecodeIndex + 1));
+    int limitSlot = frame.getLocalSlot(getMethod().getBytecode(bytecodeIndex + 2));
+    if (frame.isLong(counterSlot) && frame.isLong(limitSlot)
+        && areNumberSendsSpecialised()) {
+      if (frame.getLong(counterSlot) < frame.getLong(limitSlot)) {
+        doJump(bytecodeIndex);
+      }
+      return;
+    }
+
+    if (isLoopEnd(JUMP_IF_LESS, bytecodeIndex)) {
+      doJump(bytecodeIndex);
+    }
+  }
+
+  /**
+   * Tells whether the counted loop with the given test ends. Numbers are
+   * compared directly, as long as the specialised sends are. Like in the
+   * library, any other counter gets #<= or #>= sent with the limit, and the
+   * loop ends once the result is false.
+   */
+  boolean isLoopEnd(final byte test, final int bytecodeIndex) {
+    Frame frame = getFrame();
+    SMethod method = getMethod();
+    SAbstractObject counter = frame.getLocal(method.getBytecode(bytecodeIndex + 1), 0);
+    SAbstractObject limit = frame.getLocal(method.getBytecode(bytecodeIndex + 2), 0);
+    if (counter instanceof SNumber && limit instanceof SNumber
+        && !frame.isWaitingForResult() && areNumberSendsSpecialised()) {
+      return test == JUMP_IF_GREATER ? isLessThan(limit, counter)
+          : isLessThan(counter, limit);
+    }
+
+    SAbstractObject result = sendForResult(test == JUMP_IF_GREATER ? "<=" : ">=",
+        bytecodeIndex, counter, limit);
+    return result == universe.falseObject;
+  }
+
+  /**
+   * Sends a message for a bytecode whose operands are not of the expected
+   * kind, with the first operand as the receiver. Returns the result, or null
+   * if the send activated a method. The frame then stays at the bytecode,
+   * which gets the result when it is run again.
+   */
+  private SAbstractObject sendForResult(final String selector, final int bytecodeIndex,
+      final SAbstractObject... operands) {
+    Frame frame = getFrame();
+    if (!frame.isWaitingForResult()) {
+      frame.setBytecodeIndex(bytecodeIndex);
+      frame.setWaitingForResult(true);
+      for (SAbstractObject operand : operands) {
+        frame.push(operand);
+      }
+      send(universe.symbolFor(selector), operands[0].getSOMClass(universe), bytecodeIndex);
+      if (getFrame() != frame) {
+        return null;
+      }
+    }
+
+    frame.setWaitingForResult(false);
+    frame.setBytecodeIndex(
+        bytecodeIndex + getBytecodeLength(getMethod().getBytecode(bytecodeIndex)));
+    return frame.pop();
+  }
+
+  private boolean isLessThan(final SAbstractObject left, final SAbstractObject right) {
+    if (left instanceof SInteger && right instanceof SInteger) {
+      return ((SInteger) left).getEmbeddedInteger() < ((SInteger) right).getEmbeddedInteger();
+    }
+    return ((SNumber) left).primLessThan((SNumber) right, universe) == universe.trueObject;
+  }
+
+  void doSpecialisedSend(final byte bytecode, final int bytecodeIndex) {
+    // Handle the specialised send bytecodes, integers and doubles are
+    // computed directly, all other receivers get the message sent
+    if (!areNumberSendsSpecialised()) {
+      doSend(bytecodeIndex);
+      return;
+    }
+
+    Frame frame = getFrame();
+    int rightSlot = frame.getStackSlot(0);
+    int leftSlot = frame.getStackSlot(1);
+
+    // The results of arithmetic stay unboxed on the stack
+    SAbstractObject result = null;
+    if (frame.isLong(leftSlot) && frame.isLong(rightSlot)) {
+      if (!isArithmetic(bytecode)) {
+        result = integerOperation(bytecode, frame.getLong(leftSlot),
+            frame.getLong(rightSlot));
+      } else if (longArithmetic(frame, bytecode, leftSlot, rightSlot)) {
+        return;
+      }
+    } else if (bytecode == IDENTICAL) {
+      SAbstractObject left = frame.getStackElement(1);
+      if (left instanceof SInteger || left instanceof SDouble) {
+        result = asBoolean(left.isIdentical(frame.getStackElement(0)));
+      }
+    } else if (frame.isNumber(leftSlot) && frame.isNumber(rightSlot)) {
+      if (!isArithmetic(bytecode)) {
+        result = doubleOperation(bytecode, frame.getDouble(leftSlot),
+            frame.getDouble(rightSlot));
+      } else {
+        doubleArithmetic(frame, bytecode, leftSlot, rightSlot);
+        return;
+      }
+    }
+
+    if (result == null) {
+      doSend(bytecodeIndex);
+      return;
+    }
+
+    getFrame().pop();
+    getFrame().setStackElement(0, result);
+  }
+
+  private static boolean isArithmetic(final byte bytecode) {
+    return bytecode == ADD || bytecode == SUBTRACT || bytecode == MULTIPLY;
+  }
+
+  /**
+   * Replaces the operands in the given slots with their sum, difference, or
+   * product.
+   *
+   * @return false if the result does not fit into a long
+   */
+  private boolean longArithmetic(final Frame frame, final byte bytecode,
+      final int leftSlot, final int rightSlot) {
+    long left = frame.getLong(leftSlot);
+    long right = frame.getLong(rightSlot);
+    long result;
+    try {
+      switch (bytecode) {
+        case ADD:
+          result = Math.addExact(left, right);
+          break;
+        case SUBTRACT:
+          result = Math.subtractExact(left, right);
+          break;
+        default:
+          result = Math.multiplyExact(left, right);
+          break;
+      }
+    } catch (ArithmeticException e) {
+      // the primitive promotes the result to a big integer
+      return false;
+    }
+    frame.setStackPointer(leftSlot);
+    if (typedSlots) {
+      frame.setLong(leftSlot, result);
+    } else {
+      frame.setStackElement(0, universe.newInteger(result));
+    }
+    return true;
+  }
+
+  private void doubleArithmetic(final Frame frame, final byte bytecode,
+      final int leftSlot, final int rightSlot) {
+    double left = frame.getDouble(leftSlot);
+    double right = frame.getDouble(rightSlot);
+    double result;
+    switch (bytecode) {
+      case ADD:
+        result = left + right;
+        break;
+      case SUBTRACT:
+        result = left - right;
+        break;
+      default:
+        result = left * right;
+        break;
+    }
+
+    frame.setStackPointer(leftSlot);
+    if (typedSlots) {
+      frame.setDouble(leftSlot, result);
+    } else {
+      frame.setStackElement(0, universe.newDouble(result));
+    }
+  }
+
+  /**
+   * @return the result, or null if it does not fit into a long
+   */
+  private SAbstractObject integerOperation(final byte bytecode, final long left,
+      final long right) {
+    try {
+      switch (bytecode) {
+        case ADD:
+          return universe.newInteger(Math.addExact(left, right));
+        case SUBTRACT:
+          return universe.newInteger(Math.subtractExact(left, right));
+        case MULTIPLY:
+          return universe.newInteger(Math.multiplyExact(left, right));
+        case LESS_THAN:
+          return asBoolean(left < right);
+        case GREATER_THAN:
+          return asBoolean(left > right);
+        case LESS_OR_EQUAL:
+          return asBoolean(left <= right);
+        case GREATER_OR_EQUAL:
+          return asBoolean(left >= right);
+        case EQUAL:
+        case IDENTICAL:
+          return asBoolean(left == right);
+        default:
+          throw new IllegalStateException("Not a specialised send: " + bytecode);
+      }
+    } catch (ArithmeticException e) {
+      // the primitive promotes the result to a big integer
+      return null;
+    }
+  }
+
+  private SAbstractObject doubleOperation(final byte bytecode, final double left,
+      final double right) {
+    // comparisons follow the library, which defines them based on < and =
+    switch (bytecode) {
+      case ADD:
+        return universe.newDouble(left + right);
+      case SUBTRACT:
+        return universe.newDouble(left - right);
+      case MULTIPLY:
+        return universe.newDouble(left * right);
+      case LESS_THAN:
+        return asBoolean(left < right);
+      case GREATER_THAN:
+        return asBoolean(!(left < right) && left != right);
+      case LESS_OR_EQUAL:
+        return asBoolean(left < right || left == right);
+      case GREATER_OR_EQUAL:
+        return asBoolean(!(left < right));
+      case EQUAL:
+        return asBoolean(left == right);
+      default:
+        throw new IllegalStateException("Not a specialised send: " + bytecode);
+    }
+  }
+
+  private SObject asBoolean(final boolean value) {
+    return value ? universe.trueObject : universe.falseObject;
+  }
+
+  void doIncLocal(final int bytecodeIndex) {
+    // Handle the INC LOCAL bytecode, the counter stays unboxed
+    byte index = getMethod().getBytecode(bytecodeIndex + 1);
+    Frame frame = getFrame();
+    int slot = frame.getLocalSlot(index);
+    boolean specialised = !frame.isWaitingForResult() && areNumberSendsSpecialised();
+    if (specialised && typedSlots && frame.isLong(slot)
+        && frame.getLong(slot) != Long.MAX_VALUE) {
+      frame.setLong(slot, frame.getLong(slot) + 1);
+      return;
+    }
+
+    SAbstractObject value = getFrame().getLocal(index, 0);
+    if (specialised && value instanceof SInteger
+        && ((SInteger) value).getEmbeddedInteger() != Long.MAX_VALUE) {
+      value = universe.newInteger(((SInteger) value).getEmbeddedInteger() + 1);
+    } else if (specialised && value instanceof SNumber) {
+      value = ((SNumber) value).primAdd(universe.newInteger(1), universe);
+    } else {
+      value = sendForResult("+", bytecodeIndex, value, universe.newInteger(1));
+      if (value == null) {
+        return;
+      }
+    }
+    getFrame().setLocal(index, 0, value);
+  }
+
+  void doDecLocal(final int bytecodeIndex) {
+    // Handle the DEC LOCAL bytecode, the counter stays unboxed
+    byte index = getMethod().getBytecode(bytecodeIndex + 1);
+    Frame frame = getFrame();
+    int slot = frame.getLocalSlot(index);
+    boolean specialised = !frame.isWaitingForResult() && areNumberSendsSpecialised();
+    if (specialised && typedSlots && frame.isLong(slot)
+        && frame.getLong(slot) != Long.MIN_VALUE) {
+      frame.setLong(slot, frame.getLong(slot) - 1);
+      return;
+    }
+
+    SAbstractObject value = getFrame().getLocal(index, 0);
+    if (specialised && value instanceof SInteger
+        && ((SInteger) value).getEmbeddedInteger() != Long.MIN_VALUE) {
+      value = universe.newInteger(((SInteger) value).getEmbeddedInteger() - 1);
+    } else if (specialised && value instanceof SNumber) {
+      value = ((SNumber) value).primSubtract(universe.newInteger(1), universe);
+    } else {
+      value = sendForResult("-", bytecodeIndex, value, universe.newInteger(1));
+      if (value == null) {
+        return;
+      }
+    }
+    getFrame().setLocal(index, 0, value);
+  }
+
+  void doSend(final int bytecodeIndex) {
     // Handle the SEND bytecode
     SSymbol signature = (SSymbol) getMethod().getConstant(bytecodeIndex);
 
@@ -220,6 +827,13 @@ public class Interpreter {
     // Iterate through the bytecodes
     while (true) {
 
+      // Run the compiled code of the method if there is any
+      CompiledMethod compiledMethod = getMethod().getCompiledMethod();
+      if (compiledMethod != null) {
+        compiledMethod.execute(getFrame(), this);
+        continue;
+      }
+
       // Get the current bytecode index
       int bytecodeIndex = getFrame().getBytecodeIndex();
 
@@ -235,97 +849,208 @@ public class Interpreter {
       // Update the bytecode index of the frame
       getFrame().setBytecodeIndex(nextBytecodeIndex);
 
+      // Handle the HALT bytecode
+      if (bytecode == HALT) {
+        return getFrame().getStackElement(0);
+      }
+
       // Handle the current bytecode
-      switch (bytecode) {
+      dispatch(bytecode, bytecodeIndex);
+    }
+  }
 
-        case HALT: {
-          // Handle the HALT bytecode
-          return getFrame().getStackElement(0);
-        }
+  private void dispatch(final byte bytecode, final int bytecodeIndex)
+      throws ProgramDefinitionError {
+    switch (bytecode) {
+      case DUP: {
+        doDup();
+        break;
+      }
 
-        case DUP: {
-          doDup();
-          break;
-        }
+      case PUSH_LOCAL: {
+        doPushLocal(bytecodeIndex);
+        break;
+      }
 
-        case PUSH_LOCAL: {
-          doPushLocal(bytecodeIndex);
-          break;
-        }
+      case PUSH_ARGUMENT: {
+        doPushArgument(bytecodeIndex);
+        break;
+      }
 
-        case PUSH_ARGUMENT: {
-          doPushArgument(bytecodeIndex);
-          break;
-        }
+      case PUSH_FIELD: {
+        doPushField(bytecodeIndex);
+        break;
+      }
 
-        case PUSH_FIELD: {
-          doPushField(bytecodeIndex);
-          break;
-        }
+      case PUSH_BLOCK: {
+        doPushBlock(bytecodeIndex);
+        break;
+      }
 
-        case PUSH_BLOCK: {
-          doPushBlock(bytecodeIndex);
-          break;
-        }
+      case PUSH_CONSTANT: {
+        doPushConstant(bytecodeIndex);
+        break;
+      }
 
-        case PUSH_CONSTANT: {
-          doPushConstant(bytecodeIndex);
-          break;
-        }
+      case PUSH_GLOBAL: {
+        doPushGlobal(bytecodeIndex);
+        break;
+      }
 
-        case PUSH_GLOBAL: {
-          doPushGlobal(bytecodeIndex);
-          break;
-        }
+      case POP: {
+        doPop(bytecodeIndex);
+        break;
+      }
 
-        case POP: {
-          doPop();
-          break;
-        }
+      case POP_LOCAL: {
+        doPopLocal(bytecodeIndex);
+        break;
+      }
 
-        case POP_LOCAL: {
-          doPopLocal(bytecodeIndex);
-          break;
-        }
+      case POP_ARGUMENT: {
+        doPopArgument(bytecodeIndex);
+        break;
+      }
 
-        case POP_ARGUMENT: {
-          doPopArgument(bytecodeIndex);
-          break;
-        }
+      case POP_FIELD: {
+        doPopField(bytecodeIndex);
+        break;
+      }
 
-        case POP_FIELD: {
-          doPopField(bytecodeIndex);
-          break;
-        }
+      case SEND: {
+        doSend(bytecodeIndex);
+        break;
+      }
 
-        case SEND: {
-          doSend(bytecodeIndex);
-          break;
-        }
+      case SUPER_SEND: {
+        doSuperSend(bytecodeIndex);
+        break;
+      }
 
-        case SUPER_SEND: {
-          doSuperSend(bytecodeIndex);
-          break;
-        }
+      case RETURN_LOCAL: {
+        doReturnLocal();
+        break;
+      }
 
-        case RETURN_LOCAL: {
-          doReturnLocal();
-          break;
-        }
+      case RETURN_NON_LOCAL: {
+        doReturnNonLocal();
+        break;
+      }
 
-        case RETURN_NON_LOCAL: {
-          doReturnNonLocal();
-          break;
-        }
+      case JUMP: {
+        doJump(bytecodeIndex);
+        break;
+      }
 
-        default:
-          Universe.errorPrintln("Nasty bug in interpreter");
-          break;
+      case JUMP_IF_TRUE: {
+        doJumpIfTrue(bytecodeIndex);
+        break;
+      }
+
+      case JUMP_IF_FALSE: {
+        doJumpIfFalse(bytecodeIndex);
+        break;
+      }
+
+      case JUMP_BACKWARD: {
+        doJumpBackward(bytecodeIndex);
+        break;
+      }
+
+      case JUMP_IF_GREATER: {
+        doJumpIfGreater(bytecodeIndex);
+        break;
+      }
+
+      case JUMP_IF_LESS: {
+        doJumpIfLess(bytecodeIndex);
+        break;
+      }
+
+      case ADD:
+      case SUBTRACT:
+      case MULTIPLY:
+      case LESS_THAN:
+      case GREATER_THAN:
+      case LESS_OR_EQUAL:
+      case GREATER_OR_EQUAL:
+      case EQUAL:
+      case IDENTICAL: {
+        doSpecialisedSend(bytecode, bytecodeIndex);
+        break;
+      }
+
+      case INC_LOCAL: {
+        doIncLocal(bytecodeIndex);
+        break;
       }
+
+      case DEC_LOCAL: {
+        doDecLocal(bytecodeIndex);
+        break;
+      }
+
+      case PUSH_LOCAL_0: {
+        doPushLocal0(bytecodeIndex);
+        break;
+      }
+
+      case PUSH_ARGUMENT_0: {
+        doPushArgument0(bytecodeIndex);
+        break;
+      }
+
+      case PUSH_SELF: {
+        doPushSelf();
+        break;
+      }
+
+      case PUSH_FIELD_0: {
+        doPushField0(bytecodeIndex);
+        break;
+      }
+
+      case POP_LOCAL_0: {
+        doPopLocal0(bytecodeIndex);
+        break;
+      }
+
+      case POP_FIELD_0: {
+        doPopField0(bytecodeIndex);
+        break;
+      }
+
+      case RETURN_ARGUMENT: {
+        doReturnArgument(bytecodeIndex);
+        break;
+      }
+
+      case POP_PUSH_SELF: {
+        doPopPushSelf(bytecodeIndex);
+        break;
+      }
+
+      case PUSH_LOCAL_NUM: {
+        doPushLocalNum(bytecodeIndex);
+        break;
+      }
+
+      case POP_LOCAL_NUM: {
+        doPopLocalNum(bytecodeIndex);
+        break;
+      }
+
+      default:
+        Universe.errorPrintln("Nasty bug in interpreter");
+        break;
     }
   }
 
   public Frame pushNewFrame(final SMethod method, final Frame contextFrame) {
+    if (jitCompiler != null) {
+      jitCompiler.countInvocation(method);
+    }
+
     // Allocate a new frame and make it the current one
     frame = universe.newFrame(frame, method, contextFrame);
 
@@ -349,39 +1074,30 @@ public class Interpreter {
 
   public SAbstractObject getSelf() {
     // Get the self object from the interpreter
-    return getFrame().getOuterContext(universe.nilObject).getArgument(0, 0);
+    return getFrame().getReceiver();
   }
 
   private void send(final SSymbol selector, final SClass receiverClass,
       final int bytecodeIndex) {
-    // First try the inline cache
-    SInvokable invokable;
-
-    SMethod m = getMethod();
-    SClass cachedClass = m.getInlineCacheClass(bytecodeIndex);
-    if (cachedClass == receiverClass) {
-      invokable = m.getInlineCacheInvokable(bytecodeIndex);
-    } else {
-      if (cachedClass == null) {
-        // Lookup the invokable with the given signature
-        invokable = receiverClass.lookupInvokable(selector);
-        m.setInlineCache(bytecodeIndex, receiverClass, invokable);
-      } else {
-        // the bytecode index after the send is used by the selector constant, and can be used
-        // safely as another cache item
-        cachedClass = m.getInlineCacheClass(bytecodeIndex + 1);
-        if (cachedClass == receiverClass) {
-          invokable = m.getInlineCacheInvokable(bytecodeIndex + 1);
-        } else {
-          invokable = receiverClass.lookupInvokable(selector);
-          if (cachedClass == null) {
-            m.setInlineCache(bytecodeIndex + 1, receiverClass, invokable);
-          }
-        }
-      }
-    }
-
-    if (invokable != null) {
+    // First try the inline cache, which falls back to the global cache
+    SInvokable invokable = getMethod().getInlineCache(bytecodeIndex).lookup(receiverClass,
+        selector, universe.getLookupCache());
+
+    if (invokable instanceof SPrimitive.Binary) {
+      // Call primitives of a fixed arity directly with their receiver and
+      // arguments, which are replaced by the result
+      SAbstractObject argument = frame.pop();
+      frame.setStackElement(0, ((SPrimitive.Binary<?, ?>) invokable).invokeBinary(
+          frame.getStackElement(0), argument));
+    } else if (invokable instanceof SPrimitive.Unary) {
+      frame.setStackElement(0,
+          ((SPrimitive.Unary<?>) invokable).invokeUnary(frame.getStackElement(0)));
+    } else if (invokable instanceof SPrimitive.Ternary) {
+      SAbstractObject argument2 = frame.pop();
+      SAbstractObject argument1 = frame.pop();
+      frame.setStackElement(0, ((SPrimitive.Ternary<?, ?, ?>) invokable).invokeTernary(
+          frame.getStackElement(0), argument1, argument2));
+    } else if (invokable != null) {
       // Invoke the invokable in the current frame
       invokable.invoke(getFrame(), this);
     } else {
@@ -404,6 +1120,9 @@ public class Interpreter {
     // Destroy the previous pointer on the old top frame
     result.clearPreviousFrame();
 
+    // Free its slots on the execution stack
+    executionStack.pop(result);
+
     // Return the popped frame
     return result;
   }
@@ -422,5 +1141,15 @@ public class Interpreter {
     getFrame().push(result);
   }
 
-  private Frame frame;
+  private Frame                frame;
+  private JitCompiler          jitCompiler;
+  private boolean              typedSlots;
+
+  // The methods of Integer and Double for the specialised sends
+  private SInvokable[]         integerMethods;
+  private SInvokable[]         doubleMethods;
+  private int                  integerVersion;
+  private int                  doubleVersion;
+  private boolean              numberSendsSpecialised;
+  private final ExecutionStack executionStack;
 }
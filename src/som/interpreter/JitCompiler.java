@@ -0,0 +1,297 @@
+package som.interpreter;
+
+import static som.interpreter.Bytecodes.*;
+import static som.interpreter.ClassFileWriter.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import som.interpreter.ClassFileWriter.Code;
+import som.interpreter.ClassFileWriter.Label;
+import som.vmobjects.SMethod;
+
+
+/**
+ * Translates the bytecodes of hot methods into JVM classes, so that the JVM
+ * can compile SOM methods directly, without the dispatch of the interpreter.
+ *
+ * <p>
+ * Each bytecode becomes a call of the corresponding helper in
+ * {@link CompiledMethod}, with its operands as constants, and jumps become
+ * JVM branches. Sends keep using the inline caches of the method. Methods
+ * that cannot be translated, for instance, because they are too large, stay
+ * interpreted.
+ *
+ * <p>
+ * A method is compiled once it was invoked {@link #INVOCATION_THRESHOLD}
+ * times, or once its loops jumped back {@link #BACK_EDGE_THRESHOLD} times.
+ * Since compiled code can start at any bytecode, a method that is compiled
+ * while running a loop continues in compiled code.
+ */
+final class JitCompiler {
+
+  static final int INVOCATION_THRESHOLD = Integer.getInteger("som.jit.invocations", 1000);
+  static final int BACK_EDGE_THRESHOLD  = Integer.getInteger("som.jit.backEdges", 10000);
+
+  private static final String COMPILED_METHOD = "som/interpreter/CompiledMethod";
+  private static final String FRAME           = "som/interpreter/Frame";
+  private static final String INTERPRETER     = "som/interpreter/Interpreter";
+
+  private static final String F = "L" + FRAME + ";";
+  private static final String I = "L" + INTERPRETER + ";";
+
+  private int numberOfCompiledMethods;
+
+  void countInvocation(final SMethod method) {
+    if (method.incrementInvocationCount() == INVOCATION_THRESHOLD) {
+      compile(method);
+    }
+  }
+
+  void countBackEdge(final SMethod method) {
+    if (method.incrementBackEdgeCount() == BACK_EDGE_THRESHOLD) {
+      compile(method);
+    }
+  }
+
+  void compile(final SMethod method) {
+    if (method.getCompiledMethod() != null || !method.isCompilable()) {
+      return;
+    }
+
+    String className = "som.compiled.Method" + numberOfCompiledMethods++;
+    try {
+      byte[] classFile = translate(method, className.replace('.', '/'));
+      Class<?> compiledClass = new CompiledMethodLoader().define(className, classFile);
+      method.setCompiledMethod(
+          (CompiledMethod) compiledClass.getDeclaredConstructor().newInstance());
+    } catch (IllegalStateException | ReflectiveOperationException | LinkageError e) {
+      // the method continues to be interpreted
+      method.setNotCompilable();
+    }
+  }
+
+  private byte[] translate(final SMethod method, final String className) {
+    ClassFileWriter writer = new ClassFileWriter(className, COMPILED_METHOD);
+
+    Code constructor = new Code();
+    constructor.op(ALOAD_0);
+    constructor.op(INVOKESPECIAL, writer.methodRef(COMPILED_METHOD, "<init>", "()V"));
+    constructor.op(RETURN);
+    writer.addMethod(ACC_PUBLIC, "<init>", "()V", constructor, 1, 1);
+
+    writer.addMethod(ACC_PUBLIC, "execute", "(" + F + I + ")V",
+        translateBytecodes(method, writer), 6, 3);
+    return writer.toByteArray();
+  }
+
+  /**
+   * The code starts with a switch on the bytecode index of the frame, which
+   * leads to the translation of the bytecode at this index. The frame is in
+   * local 1 and the interpreter in local 2.
+   */
+  private Code translateBytecodes(final SMethod method, final ClassFileWriter writer) {
+    int numberOfBytecodes = method.getNumberOfBytecodes();
+
+    List<Integer> starts = new ArrayList<>();
+    Label[] labels = new Label[numberOfBytecodes];
+    for (int i = 0; i < numberOfBytecodes; i += getBytecodeLength(method.getBytecode(i))) {
+      starts.add(i);
+      labels[i] = new Label();
+    }
+
+    int[] keys = new int[starts.size()];
+    Label[] targets = new Label[starts.size()];
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = starts.get(i);
+      targets[i] = labels[keys[i]];
+    }
+
+    Code code = new Code();
+    Label exit = new Label();
+
+    code.op(ALOAD_1);
+    code.op(INVOKEVIRTUAL, writer.methodRef(FRAME, "getBytecodeIndex", "()I"));
+    code.lookupSwitch(keys, targets, labels[0]);
+
+    // Quickened bytecodes are translated like the generic ones, and
+    // superinstructions like their first bytecode, since the bytecodes they
+    // combine are still in place
+    for (int i : starts) {
+      byte bytecode = getGenericBytecode(method.getBytecode(i));
+      int next = i + getBytecodeLength(bytecode);
+      code.mark(labels[i]);
+
+      switch (bytecode) {
+        case DUP:
+          code.op(ALOAD_1);
+          helper(code, writer, "dup", "(" + F + ")V");
+          break;
+        case PUSH_LOCAL:
+        case PUSH_ARGUMENT:
+        case POP_LOCAL:
+        case POP_ARGUMENT:
+          code.op(ALOAD_1);
+          code.pushInt(writer, method.getBytecode(i + 1));
+          code.pushInt(writer, method.getBytecode(i + 2));
+          helper(code, writer, variableAccessHelper(bytecode), "(" + F + "II)V");
+          break;
+        case PUSH_FIELD:
+          code.op(ALOAD_2);
+          code.pushInt(writer, i);
+          helper(code, writer, "pushField", "(" + I + "I)V");
+          break;
+        case POP_FIELD:
+          code.op(ALOAD_2);
+          code.pushInt(writer, i);
+          helper(code, writer, "popField", "(" + I + "I)V");
+          break;
+        case PUSH_BLOCK:
+          code.op(ALOAD_2);
+          code.pushInt(writer, i);
+          helper(code, writer, "pushBlock", "(" + I + "I)V");
+          break;
+        case PUSH_CONSTANT:
+          code.op(ALOAD_1);
+          code.pushInt(writer, i);
+          helper(code, writer, "pushConstant", "(" + F + "I)V");
+          break;
+        case POP:
+          code.op(ALOAD_1);
+          helper(code, writer, "pop", "(" + F + ")V");
+          break;
+        case PUSH_GLOBAL:
+        case SEND:
+        case SUPER_SEND:
+          code.op(ALOAD_2);
+          code.op(ALOAD_1);
+          code.pushInt(writer, i);
+          code.pushInt(writer, next);
+          helper(code, writer, sendHelper(bytecode), "(" + I + F + "II)Z");
+          code.branch(IFNE, exit);
+          break;
+        case ADD:
+        case SUBTRACT:
+        case MULTIPLY:
+        case LESS_THAN:
+        case GREATER_THAN:
+        case LESS_OR_EQUAL:
+        case GREATER_OR_EQUAL:
+        case EQUAL:
+        case IDENTICAL:
+          code.op(ALOAD_2);
+          code.op(ALOAD_1);
+          code.pushInt(writer, bytecode);
+          code.pushInt(writer, i);
+          code.pushInt(writer, next);
+          helper(code, writer, "specialisedSend", "(" + I + F + "III)Z");
+          code.branch(IFNE, exit);
+          break;
+        case RETURN_LOCAL:
+          code.op(ALOAD_2);
+          helper(code, writer, "returnLocal", "(" + I + ")V");
+          code.op(RETURN);
+          break;
+        case RETURN_NON_LOCAL:
+          code.op(ALOAD_2);
+          code.op(ALOAD_1);
+          code.pushInt(writer, next);
+          helper(code, writer, "returnNonLocal", "(" + I + F + "I)V");
+          code.op(RETURN);
+          break;
+        case JUMP:
+          code.branch(GOTO, labels[i + method.getJumpOffset(i)]);
+          break;
+        case JUMP_BACKWARD:
+          code.branch(GOTO, labels[i - method.getJumpOffset(i)]);
+          break;
+        case JUMP_IF_TRUE:
+        case JUMP_IF_FALSE:
+          code.op(ALOAD_2);
+          code.pushInt(writer, bytecode);
+          code.pushInt(writer, i);
+          helper(code, writer, "isJumpTaken", "(" + I + "II)Z");
+          code.branch(IFNE, labels[i + method.getJumpOffset(i)]);
+          code.op(ALOAD_2);
+          code.op(ALOAD_1);
+          helper(code, writer, "isWaitingForResult", "(" + I + F + ")Z");
+          code.branch(IFNE, exit);
+          break;
+        case JUMP_IF_GREATER:
+        case JUMP_IF_LESS:
+          code.op(ALOAD_2);
+          code.pushInt(writer, bytecode);
+          code.pushInt(writer, i);
+          helper(code, writer, "isLoopEnd", "(" + I + "II)Z");
+          code.branch(IFNE, labels[i + method.getJumpOffset(i)]);
+          code.op(ALOAD_2);
+          code.op(ALOAD_1);
+          helper(code, writer, "isWaitingForResult", "(" + I + F + ")Z");
+          code.branch(IFNE, exit);
+          break;
+        case INC_LOCAL:
+        case DEC_LOCAL:
+          code.op(ALOAD_2);
+          code.pushInt(writer, i);
+          helper(code, writer, bytecode == INC_LOCAL ? "incLocal" : "decLocal",
+              "(" + I + "I)V");
+          code.op(ALOAD_2);
+          code.op(ALOAD_1);
+          helper(code, writer, "isWaitingForResult", "(" + I + F + ")Z");
+          code.branch(IFNE, exit);
+          break;
+        default:
+          // HALT only appears in the bootstrap method, which runs once
+          throw new IllegalStateException(
+              "Bytecode " + getBytecodeName(bytecode) + " is not supported");
+      }
+    }
+
+    code.mark(exit);
+    code.op(RETURN);
+    return code;
+  }
+
+  private static void helper(final Code code, final ClassFileWriter writer,
+      final String name, final String descriptor) {
+    code.op(INVOKESTATIC, writer.methodRef(COMPILED_METHOD, name, descriptor));
+  }
+
+  private static String variableAccessHelper(final byte bytecode) {
+    switch (bytecode) {
+      case PUSH_LOCAL:
+        return "pushLocal";
+      case PUSH_ARGUMENT:
+        return "pushArgument";
+      case POP_LOCAL:
+        return "popLocal";
+      default:
+        return "popArgument";
+    }
+  }
+
+  private static String sendHelper(final byte bytecode) {
+    switch (bytecode) {
+      case PUSH_GLOBAL:
+        return "pushGlobal";
+      case SEND:
+        return "send";
+      default:
+        return "superSend";
+    }
+  }
+
+  /**
+   * Each compiled method gets its own class loader, so that its class can be
+   * unloaded once the method is not used anymore.
+   */
+  private static final class CompiledMethodLoader extends ClassLoader {
+    CompiledMethodLoader() {
+      super(JitCompiler.class.getClassLoader());
+    }
+
+    Class<?> define(final String name, final byte[] classFile) {
+      return defineClass(name, classFile, 0, classFile.length);
+    }
+  }
+}
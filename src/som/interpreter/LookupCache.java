@@ -0,0 +1,44 @@
+package som.interpreter;
+
+import som.vmobjects.SClass;
+import som.vmobjects.SInvokable;
+import som.vmobjects.SSymbol;
+
+
+/**
+ * A VM-wide cache of method lookups, consulted when the inline cache of a
+ * send misses. Entries are hashed on the identity of the class and the
+ * selector, and a new entry replaces the one in its place. Each entry keeps
+ * the version of its class, and is stale once methods are installed in the
+ * class or one of its superclasses.
+ */
+public final class LookupCache {
+
+  private static final int SIZE = 1024;
+  private static final int MASK = SIZE - 1;
+
+  private final SClass[]     classes    = new SClass[SIZE];
+  private final SSymbol[]    selectors  = new SSymbol[SIZE];
+  private final SInvokable[] invokables = new SInvokable[SIZE];
+  private final int[]        versions   = new int[SIZE];
+
+  public SInvokable lookup(final SClass receiverClass, final SSymbol selector) {
+    int index = (System.identityHashCode(receiverClass)
+        ^ System.identityHashCode(selector) * 31) & MASK;
+
+    int version = receiverClass.getVersion();
+    if (classes[index] == receiverClass && selectors[index] == selector
+        && versions[index] == version) {
+      return invokables[index];
+    }
+
+    SInvokable invokable = receiverClass.lookupInvokable(selector);
+    if (invokable != null) {
+      classes[index] = receiverClass;
+      selectors[index] = selector;
+      invokables[index] = invokable;
+      versions[index] = version;
+    }
+    return invokable;
+  }
+}
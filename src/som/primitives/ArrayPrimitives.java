@@ -29,8 +29,6 @@ import som.vmobjects.SArray;
 import som.vmobjects.SInteger;
 import som.vmobjects.SAbstractObject;
 import som.vmobjects.SPrimitive;
-import som.interpreter.Interpreter;
-import som.interpreter.Frame;
 
 
 public class ArrayPrimitives extends Primitives {
@@ -40,40 +38,41 @@ public class ArrayPrimitives extends Primitives {
   }
 
   public void installPrimitives() {
-    installInstancePrimitive(new SPrimitive("at:", universe) {
+    installInstancePrimitive(new SPrimitive.Binary<SArray, SInteger>("at:", universe) {
 
-      public void invoke(final Frame frame, final Interpreter interpreter) {
-        SInteger index = (SInteger) frame.pop();
-        SArray self = (SArray) frame.pop();
-        frame.push(self.getIndexableField(index.getEmbeddedInteger() - 1));
+      @Override
+      public SAbstractObject invoke(final SArray self, final SInteger index) {
+        return self.getIndexableField(index.getEmbeddedInteger() - 1);
       }
     });
 
-    installInstancePrimitive(new SPrimitive("at:put:", universe) {
+    installInstancePrimitive(
+        new SPrimitive.Ternary<SArray, SInteger, SAbstractObject>("at:put:", universe) {
 
-      public void invoke(final Frame frame, final Interpreter interpreter) {
-        SAbstractObject value = frame.pop();
-        SInteger index = (SInteger) frame.pop();
-        SArray self = (SArray) frame.getStackElement(0);
-        self.setIndexableField(index.getEmbeddedInteger() - 1, value);
-      }
-    });
+          @Override
+          public SAbstractObject invoke(final SArray self, final SInteger index,
+              final SAbstractObject value) {
+            self.setIndexableField(index.getEmbeddedInteger() - 1, value);
+            return self;
+          }
+        });
 
-    installInstancePrimitive(new SPrimitive("length", universe) {
+    installInstancePrimitive(new SPrimitive.Unary<SArray>("length", universe) {
 
-      public void invoke(final Frame frame, final Interpreter interpreter) {
-        SArray self = (SArray) frame.pop();
-        frame.push(universe.newInteger(self.getNumberOfIndexableFields()));
+      @Override
+      public SAbstractObject invoke(final SArray self) {
+        return universe.newInteger(self.getNumberOfIndexableFields());
       }
     });
 
-    installClassPrimitive(new SPrimitive("new:", universe) {
+    installClassPrimitive(
+        new SPrimitive.Binary<SAbstractObject, SInteger>("new:", universe) {
 
-      public void invoke(final Frame frame, final Interpreter interpreter) {
-        SInteger length = (SInteger) frame.pop();
-        frame.pop(); // not required
-        frame.push(universe.newArray(length.getEmbeddedInteger()));
-      }
-    });
+          @Override
+          public SAbstractObject invoke(final SAbstractObject self,
+              final SInteger length) {
+            return universe.newArray(length.getEmbeddedInteger());
+          }
+        });
   }
 }
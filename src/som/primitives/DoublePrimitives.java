@@ -24,8 +24,6 @@
 
 package som.primitives;
 
-import som.interpreter.Frame;
-import som.interpreter.Interpreter;
 import som.vm.Universe;
 import som.vmobjects.SAbstractObject;
 import som.vmobjects.SDouble;
@@ -41,126 +39,107 @@ public class DoublePrimitives extends Primitives {
 
   @Override
   public void installPrimitives() {
-    installInstancePrimitive(new SPrimitive("asString", universe) {
+    installInstancePrimitive(new SPrimitive.Unary<SDouble>("asString", universe) {
       @Override
-      public void invoke(final Frame frame, final Interpreter interpreter) {
-        SDouble self = (SDouble) frame.pop();
-        frame.push(self.primAsString(universe));
+      public SAbstractObject invoke(final SDouble self) {
+        return self.primAsString(universe);
       }
     });
 
-    installInstancePrimitive(new SPrimitive("asInteger", universe) {
+    installInstancePrimitive(new SPrimitive.Unary<SDouble>("asInteger", universe) {
       @Override
-      public void invoke(final Frame frame, final Interpreter interpreter) {
-        SDouble self = (SDouble) frame.pop();
-        frame.push(self.primAsInteger(universe));
+      public SAbstractObject invoke(final SDouble self) {
+        return self.primAsInteger(universe);
       }
     });
 
-    installInstancePrimitive(new SPrimitive("sqrt", universe) {
+    installInstancePrimitive(new SPrimitive.Unary<SDouble>("sqrt", universe) {
       @Override
-      public void invoke(final Frame frame, final Interpreter interpreter) {
-        SDouble self = (SDouble) frame.pop();
-        frame.push(self.primSqrt(universe));
+      public SAbstractObject invoke(final SDouble self) {
+        return self.primSqrt(universe);
       }
     });
 
-    installInstancePrimitive(new SPrimitive("+", universe) {
+    installInstancePrimitive(new SPrimitive.Binary<SDouble, SNumber>("+", universe) {
       @Override
-      public void invoke(final Frame frame, final Interpreter interpreter) {
-        SNumber op1 = (SNumber) frame.pop();
-        SDouble op2 = (SDouble) frame.pop();
-        frame.push(op2.primAdd(op1, universe));
+      public SAbstractObject invoke(final SDouble op2, final SNumber op1) {
+        return op2.primAdd(op1, universe);
       }
     });
 
-    installInstancePrimitive(new SPrimitive("-", universe) {
+    installInstancePrimitive(new SPrimitive.Binary<SDouble, SNumber>("-", universe) {
       @Override
-      public void invoke(final Frame frame, final Interpreter interpreter) {
-        SNumber op1 = (SNumber) frame.pop();
-        SDouble op2 = (SDouble) frame.pop();
-        frame.push(op2.primSubtract(op1, universe));
+      public SAbstractObject invoke(final SDouble op2, final SNumber op1) {
+        return op2.primSubtract(op1, universe);
       }
     });
 
-    installInstancePrimitive(new SPrimitive("*", universe) {
+    installInstancePrimitive(new SPrimitive.Binary<SDouble, SNumber>("*", universe) {
       @Override
-      public void invoke(final Frame frame, final Interpreter interpreter) {
-        SNumber op1 = (SNumber) frame.pop();
-        SDouble op2 = (SDouble) frame.pop();
-        frame.push(op2.primMultiply(op1, universe));
+      public SAbstractObject invoke(final SDouble op2, final SNumber op1) {
+        return op2.primMultiply(op1, universe);
       }
     });
 
-    installInstancePrimitive(new SPrimitive("//", universe) {
+    installInstancePrimitive(new SPrimitive.Binary<SDouble, SNumber>("//", universe) {
       @Override
-      public void invoke(final Frame frame, final Interpreter interpreter) {
-        SNumber op1 = (SNumber) frame.pop();
-        SDouble op2 = (SDouble) frame.pop();
-        frame.push(op2.primDoubleDivide(op1, universe));
+      public SAbstractObject invoke(final SDouble op2, final SNumber op1) {
+        return op2.primDoubleDivide(op1, universe);
       }
     });
 
-    installInstancePrimitive(new SPrimitive("%", universe) {
+    installInstancePrimitive(new SPrimitive.Binary<SDouble, SNumber>("%", universe) {
       @Override
-      public void invoke(final Frame frame, final Interpreter interpreter) {
-        SNumber op1 = (SNumber) frame.pop();
-        SDouble op2 = (SDouble) frame.pop();
-        frame.push(op2.primModulo(op1, universe));
+      public SAbstractObject invoke(final SDouble op2, final SNumber op1) {
+        return op2.primModulo(op1, universe);
       }
     });
 
-    installInstancePrimitive(new SPrimitive("=", universe) {
-      @Override
-      public void invoke(final Frame frame, final Interpreter interpreter) {
-        SAbstractObject op1 = frame.pop();
-        SDouble op2 = (SDouble) frame.pop();
-        frame.push(op2.primEqual(op1, universe));
-      }
-    });
+    installInstancePrimitive(
+        new SPrimitive.Binary<SDouble, SAbstractObject>("=", universe) {
+          @Override
+          public SAbstractObject invoke(final SDouble op2, final SAbstractObject op1) {
+            return op2.primEqual(op1, universe);
+          }
+        });
 
-    installInstancePrimitive(new SPrimitive("<", universe) {
+    installInstancePrimitive(new SPrimitive.Binary<SDouble, SNumber>("<", universe) {
       @Override
-      public void invoke(final Frame frame, final Interpreter interpreter) {
-        SNumber op1 = (SNumber) frame.pop();
-        SDouble op2 = (SDouble) frame.pop();
-        frame.push(op2.primLessThan(op1, universe));
+      public SAbstractObject invoke(final SDouble op2, final SNumber op1) {
+        return op2.primLessThan(op1, universe);
       }
     });
 
-    installInstancePrimitive(new SPrimitive("round", universe) {
+    installInstancePrimitive(new SPrimitive.Unary<SDouble>("round", universe) {
       @Override
-      public void invoke(final Frame frame, final Interpreter interpreter) {
-        SDouble rcvr = (SDouble) frame.pop();
+      public SAbstractObject invoke(final SDouble rcvr) {
         long result = Math.round(rcvr.getEmbeddedDouble());
-        frame.push(universe.newInteger(result));
+        return universe.newInteger(result);
       }
     });
 
-    installInstancePrimitive(new SPrimitive("sin", universe) {
+    installInstancePrimitive(new SPrimitive.Unary<SDouble>("sin", universe) {
       @Override
-      public void invoke(final Frame frame, final Interpreter interpreter) {
-        SDouble rcvr = (SDouble) frame.pop();
+      public SAbstractObject invoke(final SDouble rcvr) {
         double result = Math.sin(rcvr.getEmbeddedDouble());
-        frame.push(universe.newDouble(result));
+        return universe.newDouble(result);
       }
     });
 
-    installInstancePrimitive(new SPrimitive("cos", universe) {
+    installInstancePrimitive(new SPrimitive.Unary<SDouble>("cos", universe) {
       @Override
-      public void invoke(final Frame frame, final Interpreter interpreter) {
-        SDouble rcvr = (SDouble) frame.pop();
+      public SAbstractObject invoke(final SDouble rcvr) {
         double result = Math.cos(rcvr.getEmbeddedDouble());
-        frame.push(universe.newDouble(result));
+        return universe.newDouble(result);
       }
     });
 
-    installClassPrimitive(new SPrimitive("PositiveInfinity", universe) {
-      @Override
-      public void invoke(final Frame frame, final Interpreter interpreter) {
-        frame.pop();
-        frame.push(universe.newDouble(Double.POSITIVE_INFINITY));
-      }
-    });
+    installClassPrimitive(
+        new SPrimitive.Unary<SAbstractObject>("PositiveInfinity", universe) {
+          @Override
+          public SAbstractObject invoke(final SAbstractObject self) {
+            return universe.newDouble(Double.POSITIVE_INFINITY);
+          }
+        });
   }
 }
@@ -26,8 +26,6 @@ package som.primitives;
 
 import java.math.BigInteger;
 
-import som.interpreter.Frame;
-import som.interpreter.Interpreter;
 import som.vm.Universe;
 import som.vmobjects.SAbstractObject;
 import som.vmobjects.SBigInteger;
@@ -45,180 +43,150 @@ public class IntegerPrimitives extends Primitives {
 
   @Override
   public void installPrimitives() {
-    installInstancePrimitive(new SPrimitive("asString", universe) {
+    installInstancePrimitive(new SPrimitive.Unary<SNumber>("asString", universe) {
       @Override
-      public void invoke(final Frame frame, final Interpreter interpreter) {
-        SNumber self = (SNumber) frame.pop();
-        frame.push(self.primAsString(universe));
+      public SAbstractObject invoke(final SNumber self) {
+        return self.primAsString(universe);
       }
     });
 
-    installInstancePrimitive(new SPrimitive("sqrt", universe) {
+    installInstancePrimitive(new SPrimitive.Unary<SInteger>("sqrt", universe) {
       @Override
-      public void invoke(final Frame frame, final Interpreter interpreter) {
-        SInteger self = (SInteger) frame.pop();
-        frame.push(self.primSqrt(universe));
+      public SAbstractObject invoke(final SInteger self) {
+        return self.primSqrt(universe);
       }
     });
 
-    installInstancePrimitive(new SPrimitive("atRandom", universe) {
+    installInstancePrimitive(new SPrimitive.Unary<SInteger>("atRandom", universe) {
       @Override
-      public void invoke(final Frame frame, final Interpreter interpreter) {
-        SInteger self = (SInteger) frame.pop();
-        frame.push(universe.newInteger(
-            (long) (self.getEmbeddedInteger() * Math.random())));
+      public SAbstractObject invoke(final SInteger self) {
+        return universe.newInteger((long) (self.getEmbeddedInteger() * Math.random()));
       }
     });
 
-    installInstancePrimitive(new SPrimitive("+", universe) {
+    installInstancePrimitive(new SPrimitive.Binary<SNumber, SNumber>("+", universe) {
       @Override
-      public void invoke(final Frame frame, final Interpreter interpreter) {
-        SNumber right = (SNumber) frame.pop();
-        SNumber left = (SNumber) frame.pop();
-        frame.push(left.primAdd(right, universe));
+      public SAbstractObject invoke(final SNumber left, final SNumber right) {
+        return left.primAdd(right, universe);
       }
     });
 
-    installInstancePrimitive(new SPrimitive("-", universe) {
+    installInstancePrimitive(new SPrimitive.Binary<SNumber, SNumber>("-", universe) {
       @Override
-      public void invoke(final Frame frame, final Interpreter interpreter) {
-        SNumber right = (SNumber) frame.pop();
-        SNumber left = (SNumber) frame.pop();
-        frame.push(left.primSubtract(right, universe));
+      public SAbstractObject invoke(final SNumber left, final SNumber right) {
+        return left.primSubtract(right, universe);
       }
     });
 
-    installInstancePrimitive(new SPrimitive("*", universe) {
+    installInstancePrimitive(new SPrimitive.Binary<SNumber, SNumber>("*", universe) {
       @Override
-      public void invoke(final Frame frame, final Interpreter interpreter) {
-        SNumber right = (SNumber) frame.pop();
-        SNumber left = (SNumber) frame.pop();
-        frame.push(left.primMultiply(right, universe));
+      public SAbstractObject invoke(final SNumber left, final SNumber right) {
+        return left.primMultiply(right, universe);
       }
     });
 
-    installInstancePrimitive(new SPrimitive("//", universe) {
+    installInstancePrimitive(new SPrimitive.Binary<SNumber, SNumber>("//", universe) {
       @Override
-      public void invoke(final Frame frame, final Interpreter interpreter) {
-        SNumber right = (SNumber) frame.pop();
-        SNumber left = (SNumber) frame.pop();
-        frame.push(left.primDoubleDivide(right, universe));
+      public SAbstractObject invoke(final SNumber left, final SNumber right) {
+        return left.primDoubleDivide(right, universe);
       }
     });
 
-    installInstancePrimitive(new SPrimitive("/", universe) {
+    installInstancePrimitive(new SPrimitive.Binary<SNumber, SNumber>("/", universe) {
       @Override
-      public void invoke(final Frame frame, final Interpreter interpreter) {
-        SNumber right = (SNumber) frame.pop();
-        SNumber left = (SNumber) frame.pop();
-        frame.push(left.primIntegerDivide(right, universe));
+      public SAbstractObject invoke(final SNumber left, final SNumber right) {
+        return left.primIntegerDivide(right, universe);
       }
     });
 
-    installInstancePrimitive(new SPrimitive("%", universe) {
+    installInstancePrimitive(new SPrimitive.Binary<SNumber, SNumber>("%", universe) {
       @Override
-      public void invoke(final Frame frame, final Interpreter interpreter) {
-        SNumber right = (SNumber) frame.pop();
-        SNumber left = (SNumber) frame.pop();
-        frame.push(left.primModulo(right, universe));
+      public SAbstractObject invoke(final SNumber left, final SNumber right) {
+        return left.primModulo(right, universe);
       }
     });
 
-    installInstancePrimitive(new SPrimitive("rem:", universe) {
+    installInstancePrimitive(new SPrimitive.Binary<SInteger, SNumber>("rem:", universe) {
       @Override
-      public void invoke(final Frame frame, final Interpreter interpreter) {
-        SNumber right = (SNumber) frame.pop();
-        SInteger left = (SInteger) frame.pop();
-        frame.push(left.primRemainder(right, universe));
+      public SAbstractObject invoke(final SInteger left, final SNumber right) {
+        return left.primRemainder(right, universe);
       }
     });
 
-    installInstancePrimitive(new SPrimitive("&", universe) {
+    installInstancePrimitive(new SPrimitive.Binary<SNumber, SNumber>("&", universe) {
       @Override
-      public void invoke(final Frame frame, final Interpreter interpreter) {
-        SNumber right = (SNumber) frame.pop();
-        SNumber left = (SNumber) frame.pop();
-        frame.push(left.primBitAnd(right, universe));
+      public SAbstractObject invoke(final SNumber left, final SNumber right) {
+        return left.primBitAnd(right, universe);
       }
     });
 
-    installInstancePrimitive(new SPrimitive("=", universe) {
-      @Override
-      public void invoke(final Frame frame, final Interpreter interpreter) {
-        SAbstractObject right = frame.pop();
-        SNumber left = (SNumber) frame.pop();
-        frame.push(left.primEqual(right, universe));
-      }
-    });
+    installInstancePrimitive(
+        new SPrimitive.Binary<SNumber, SAbstractObject>("=", universe) {
+          @Override
+          public SAbstractObject invoke(final SNumber left, final SAbstractObject right) {
+            return left.primEqual(right, universe);
+          }
+        });
 
-    installInstancePrimitive(new SPrimitive("<", universe) {
+    installInstancePrimitive(new SPrimitive.Binary<SNumber, SNumber>("<", universe) {
       @Override
-      public void invoke(final Frame frame, final Interpreter interpreter) {
-        SNumber right = (SNumber) frame.pop();
-        SNumber left = (SNumber) frame.pop();
-        frame.push(left.primLessThan(right, universe));
+      public SAbstractObject invoke(final SNumber left, final SNumber right) {
+        return left.primLessThan(right, universe);
       }
     });
 
-    installInstancePrimitive(new SPrimitive("<<", universe) {
+    installInstancePrimitive(new SPrimitive.Binary<SNumber, SNumber>("<<", universe) {
       @Override
-      public void invoke(final Frame frame, final Interpreter interpreter) {
-        SNumber right = (SNumber) frame.pop();
-        SNumber left = (SNumber) frame.pop();
-        frame.push(left.primLeftShift(right, universe));
+      public SAbstractObject invoke(final SNumber left, final SNumber right) {
+        return left.primLeftShift(right, universe);
       }
     });
 
-    installInstancePrimitive(new SPrimitive("bitXor:", universe) {
-      @Override
-      public void invoke(final Frame frame, final Interpreter interpreter) {
-        SNumber right = (SNumber) frame.pop();
-        SNumber left = (SNumber) frame.pop();
-        frame.push(left.primBitXor(right, universe));
-      }
-    });
+    installInstancePrimitive(
+        new SPrimitive.Binary<SNumber, SNumber>("bitXor:", universe) {
+          @Override
+          public SAbstractObject invoke(final SNumber left, final SNumber right) {
+            return left.primBitXor(right, universe);
+          }
+        });
 
-    installInstancePrimitive(new SPrimitive("as32BitSignedValue", universe) {
-      @Override
-      public void invoke(final Frame frame, final Interpreter interpreter) {
-        SInteger rcvr = (SInteger) frame.pop();
-        frame.push(universe.newInteger((int) rcvr.getEmbeddedInteger()));
-      }
-    });
+    installInstancePrimitive(
+        new SPrimitive.Unary<SInteger>("as32BitSignedValue", universe) {
+          @Override
+          public SAbstractObject invoke(final SInteger rcvr) {
+            return universe.newInteger((int) rcvr.getEmbeddedInteger());
+          }
+        });
 
-    installInstancePrimitive(new SPrimitive("as32BitUnsignedValue", universe) {
-      @Override
-      public void invoke(final Frame frame, final Interpreter interpreter) {
-        SInteger rcvr = (SInteger) frame.pop();
-        frame.push(
-            universe.newInteger(Integer.toUnsignedLong((int) rcvr.getEmbeddedInteger())));
-      }
-    });
+    installInstancePrimitive(
+        new SPrimitive.Unary<SInteger>("as32BitUnsignedValue", universe) {
+          @Override
+          public SAbstractObject invoke(final SInteger rcvr) {
+            return universe.newInteger(
+                Integer.toUnsignedLong((int) rcvr.getEmbeddedInteger()));
+          }
+        });
 
-    installInstancePrimitive(new SPrimitive(">>>", universe) {
+    installInstancePrimitive(new SPrimitive.Binary<SInteger, SInteger>(">>>", universe) {
       @Override
-      public void invoke(final Frame frame, final Interpreter interpreter) {
-        SInteger right = (SInteger) frame.pop();
-        SInteger rcvr = (SInteger) frame.pop();
-        frame.push(
-            universe.newInteger(rcvr.getEmbeddedInteger() >>> right.getEmbeddedInteger()));
+      public SAbstractObject invoke(final SInteger rcvr, final SInteger right) {
+        return universe.newInteger(
+            rcvr.getEmbeddedInteger() >>> right.getEmbeddedInteger());
       }
     });
 
-    installClassPrimitive(new SPrimitive("fromString:", universe) {
-      @Override
-      public void invoke(final Frame frame, final Interpreter interpreter) {
-        SString param = (SString) frame.pop();
-        frame.pop();
-
-        try {
-          long result = Long.parseLong(param.getEmbeddedString());
-          frame.push(universe.newInteger(result));
-        } catch (NumberFormatException e) {
-          BigInteger result = new BigInteger(param.getEmbeddedString());
-          frame.push(new SBigInteger(result));
-        }
-      }
-    });
+    installClassPrimitive(
+        new SPrimitive.Binary<SAbstractObject, SString>("fromString:", universe) {
+          @Override
+          public SAbstractObject invoke(final SAbstractObject self, final SString param) {
+            try {
+              long result = Long.parseLong(param.getEmbeddedString());
+              return universe.newInteger(result);
+            } catch (NumberFormatException e) {
+              BigInteger result = new BigInteger(param.getEmbeddedString());
+              return new SBigInteger(result);
+            }
+          }
+        });
   }
 }
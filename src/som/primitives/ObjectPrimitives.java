@@ -47,43 +47,42 @@ public class ObjectPrimitives extends Primitives {
   @Override
   public void installPrimitives() {
 
-    installInstancePrimitive(new SPrimitive("==", universe) {
+    installInstancePrimitive(
+        new SPrimitive.Binary<SAbstractObject, SAbstractObject>("==", universe) {
+          @Override
+          public SAbstractObject invoke(final SAbstractObject op2,
+              final SAbstractObject op1) {
+            if (op1.isIdentical(op2)) {
+              return universe.trueObject;
+            } else {
+              return universe.falseObject;
+            }
+          }
+        });
+
+    installInstancePrimitive(new SPrimitive.Unary<SAbstractObject>("hashcode", universe) {
       @Override
-      public void invoke(final Frame frame, final Interpreter interpreter) {
-        SAbstractObject op1 = frame.pop();
-        SAbstractObject op2 = frame.pop();
-        if (op1 == op2) {
-          frame.push(universe.trueObject);
-        } else {
-          frame.push(universe.falseObject);
-        }
-      }
-    });
-
-    installInstancePrimitive(new SPrimitive("hashcode", universe) {
-      @Override
-      public void invoke(final Frame frame, final Interpreter interpreter) {
-        SAbstractObject self = frame.pop();
-        frame.push(universe.newInteger(self.hashCode()));
+      public SAbstractObject invoke(final SAbstractObject self) {
+        return universe.newInteger(self.hashCode());
       }
     });
 
-    installInstancePrimitive(new SPrimitive("objectSize", universe) {
-      @Override
-      public void invoke(final Frame frame, final Interpreter interpreter) {
-        SAbstractObject self = frame.pop();
-
-        // each object holds its class as an implicit member that contributes to its size
-        int size = 1;
-        if (self instanceof SArray) {
-          size += ((SArray) self).getNumberOfIndexableFields();
-        }
-        if (self instanceof SObject) {
-          size += ((SObject) self).getNumberOfFields();
-        }
-        frame.push(universe.newInteger(size));
-      }
-    });
+    installInstancePrimitive(
+        new SPrimitive.Unary<SAbstractObject>("objectSize", universe) {
+          @Override
+          public SAbstractObject invoke(final SAbstractObject self) {
+            // each object holds its class as an implicit member that contributes to
+            // its size
+            int size = 1;
+            if (self instanceof SArray) {
+              size += ((SArray) self).getNumberOfIndexableFields();
+            }
+            if (self instanceof SObject) {
+              size += ((SObject) self).getNumberOfFields();
+            }
+            return universe.newInteger(size);
+          }
+        });
 
     installInstancePrimitive(new SPrimitive("perform:", universe) {
       @Override
@@ -131,42 +130,37 @@ public class ObjectPrimitives extends Primitives {
       }
     });
 
-    installInstancePrimitive(new SPrimitive("instVarAt:", universe) {
+    installInstancePrimitive(
+        new SPrimitive.Binary<SObject, SInteger>("instVarAt:", universe) {
+          @Override
+          public SAbstractObject invoke(final SObject self, final SInteger idx) {
+            return self.getField(idx.getEmbeddedInteger() - 1);
+          }
+        });
+
+    installInstancePrimitive(
+        new SPrimitive.Ternary<SObject, SInteger, SAbstractObject>("instVarAt:put:",
+            universe) {
+          @Override
+          public SAbstractObject invoke(final SObject self, final SInteger idx,
+              final SAbstractObject val) {
+            self.setField(idx.getEmbeddedInteger() - 1, val);
+            return self;
+          }
+        });
+
+    installInstancePrimitive(new SPrimitive.Unary<SAbstractObject>("class", universe) {
       @Override
-      public void invoke(final Frame frame, final Interpreter interpreter) {
-        SAbstractObject arg = frame.pop();
-        SObject self = (SObject) frame.pop();
-        SInteger idx = (SInteger) arg;
-
-        frame.push(self.getField(idx.getEmbeddedInteger() - 1));
+      public SAbstractObject invoke(final SAbstractObject self) {
+        return self.getSOMClass(universe);
       }
     });
 
-    installInstancePrimitive(new SPrimitive("instVarAt:put:", universe) {
+    installInstancePrimitive(new SPrimitive.Unary<SAbstractObject>("halt", universe) {
       @Override
-      public void invoke(final Frame frame, final Interpreter interpreter) {
-        SAbstractObject val = frame.pop();
-        SAbstractObject arg = frame.pop();
-        SObject self = (SObject) frame.getStackElement(0);
-
-        SInteger idx = (SInteger) arg;
-
-        self.setField(idx.getEmbeddedInteger() - 1, val);
-      }
-    });
-
-    installInstancePrimitive(new SPrimitive("class", universe) {
-      @Override
-      public void invoke(final Frame frame, final Interpreter interpreter) {
-        SAbstractObject self = frame.pop();
-        frame.push(self.getSOMClass(universe));
-      }
-    });
-
-    installInstancePrimitive(new SPrimitive("halt", universe) {
-      @Override
-      public void invoke(final Frame frame, final Interpreter interpreter) {
+      public SAbstractObject invoke(final SAbstractObject self) {
         Universe.errorPrintln("BREAKPOINT");
+        return self;
       }
     });
   }
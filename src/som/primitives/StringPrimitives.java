@@ -25,8 +25,6 @@
 
 package som.primitives;
 
-import som.interpreter.Frame;
-import som.interpreter.Interpreter;
 import som.vm.Universe;
 import som.vmobjects.SAbstractObject;
 import som.vmobjects.SInteger;
@@ -42,144 +40,129 @@ public class StringPrimitives extends Primitives {
 
   @Override
   public void installPrimitives() {
-    installInstancePrimitive(new SPrimitive("concatenate:", universe) {
+    installInstancePrimitive(
+        new SPrimitive.Binary<SString, SString>("concatenate:", universe) {
 
-      @Override
-      public void invoke(final Frame frame, final Interpreter interpreter) {
-        SString argument = (SString) frame.pop();
-        SString self = (SString) frame.pop();
-        frame.push(universe.newString(self.getEmbeddedString()
-            + argument.getEmbeddedString()));
-      }
-    });
+          @Override
+          public SAbstractObject invoke(final SString self, final SString argument) {
+            return self.concatenate(argument);
+          }
+        });
 
-    installInstancePrimitive(new SPrimitive("asSymbol", universe) {
+    installInstancePrimitive(new SPrimitive.Unary<SString>("asSymbol", universe) {
 
       @Override
-      public void invoke(final Frame frame, final Interpreter interpreter) {
-        SString self = (SString) frame.pop();
-        frame.push(universe.symbolFor(self.getEmbeddedString()));
+      public SAbstractObject invoke(final SString self) {
+        return universe.symbolFor(self.getEmbeddedString());
       }
     });
 
-    installInstancePrimitive(new SPrimitive("length", universe) {
+    installInstancePrimitive(new SPrimitive.Unary<SString>("length", universe) {
 
       @Override
-      public void invoke(final Frame frame, final Interpreter interpreter) {
-        SString self = (SString) frame.pop();
-        frame.push(universe.newInteger(self.getEmbeddedString().length()));
+      public SAbstractObject invoke(final SString self) {
+        return universe.newInteger(self.getLength());
       }
     });
 
-    installInstancePrimitive(new SPrimitive("=", universe) {
+    installInstancePrimitive(
+        new SPrimitive.Binary<SString, SAbstractObject>("=", universe) {
 
-      @Override
-      public void invoke(final Frame frame, final Interpreter interpreter) {
-        SAbstractObject op1 = frame.pop();
-        SString op2 = (SString) frame.pop(); // self
-        if (op1.getSOMClass(universe) == universe.stringClass) {
-          SString s = (SString) op1;
-          if (s.getEmbeddedString().equals(op2.getEmbeddedString())) {
-            frame.push(universe.trueObject);
-            return;
-          }
-        }
+          @Override
+          public SAbstractObject invoke(final SString op2, final SAbstractObject op1) {
+            if (op1.getSOMClass(universe) == universe.stringClass) {
+              SString s = (SString) op1;
+              if (s.getLength() == op2.getLength()
+                  && s.getEmbeddedString().equals(op2.getEmbeddedString())) {
+                return universe.trueObject;
+              }
+            }
 
-        frame.push(universe.falseObject);
-      }
-    });
-
-    installInstancePrimitive(new SPrimitive("primSubstringFrom:to:", universe) {
-
-      @Override
-      public void invoke(final Frame frame, final Interpreter interpreter) {
-        SInteger end = (SInteger) frame.pop();
-        SInteger start = (SInteger) frame.pop();
-
-        SString self = (SString) frame.pop();
-
-        try {
-          frame.push(universe.newString(self.getEmbeddedString().substring(
-              (int) start.getEmbeddedInteger() - 1,
-              (int) end.getEmbeddedInteger())));
-        } catch (IndexOutOfBoundsException e) {
-          frame.push(universe.newString(new java.lang.String(
-              "Error - index out of bounds")));
-        }
-      }
-    });
+            return universe.falseObject;
+          }
+        });
+
+    installInstancePrimitive(
+        new SPrimitive.Ternary<SString, SInteger, SInteger>("primSubstringFrom:to:",
+            universe) {
+
+          @Override
+          public SAbstractObject invoke(final SString self, final SInteger start,
+              final SInteger end) {
+            try {
+              return self.substring((int) start.getEmbeddedInteger() - 1,
+                  (int) end.getEmbeddedInteger());
+            } catch (IndexOutOfBoundsException e) {
+              return universe.newString(new java.lang.String(
+                  "Error - index out of bounds"));
+            }
+          }
+        });
 
-    installInstancePrimitive(new SPrimitive("hashcode", universe) {
+    installInstancePrimitive(new SPrimitive.Unary<SString>("hashcode", universe) {
 
       @Override
-      public void invoke(final Frame frame, final Interpreter interpreter) {
-        SString self = (SString) frame.pop();
-        frame.push(universe.newInteger(self.getEmbeddedString().hashCode()));
+      public SAbstractObject invoke(final SString self) {
+        return universe.newInteger(self.getEmbeddedString().hashCode());
       }
     });
 
-    installInstancePrimitive(new SPrimitive("isWhiteSpace", universe) {
+    installInstancePrimitive(new SPrimitive.Unary<SString>("isWhiteSpace", universe) {
 
       @Override
-      public void invoke(final Frame frame, final Interpreter interpreter) {
-        SString self = (SString) frame.pop();
+      public SAbstractObject invoke(final SString self) {
         String embedded = self.getEmbeddedString();
 
         for (int i = 0; i < embedded.length(); i++) {
           if (!Character.isWhitespace(embedded.charAt(i))) {
-            frame.push(universe.falseObject);
-            return;
+            return universe.falseObject;
           }
         }
 
         if (embedded.length() > 0) {
-          frame.push(universe.trueObject);
+          return universe.trueObject;
         } else {
-          frame.push(universe.falseObject);
+          return universe.falseObject;
         }
       }
     });
 
-    installInstancePrimitive(new SPrimitive("isLetters", universe) {
+    installInstancePrimitive(new SPrimitive.Unary<SString>("isLetters", universe) {
 
       @Override
-      public void invoke(final Frame frame, final Interpreter interpreter) {
-        SString self = (SString) frame.pop();
+      public SAbstractObject invoke(final SString self) {
         String embedded = self.getEmbeddedString();
 
         for (int i = 0; i < embedded.length(); i++) {
           if (!Character.isLetter(embedded.charAt(i))) {
-            frame.push(universe.falseObject);
-            return;
+            return universe.falseObject;
           }
         }
 
         if (embedded.length() > 0) {
-          frame.push(universe.trueObject);
+          return universe.trueObject;
         } else {
-          frame.push(universe.falseObject);
+          return universe.falseObject;
         }
       }
     });
 
-    installInstancePrimitive(new SPrimitive("isDigits", universe) {
+    installInstancePrimitive(new SPrimitive.Unary<SString>("isDigits", universe) {
 
       @Override
-      public void invoke(final Frame frame, final Interpreter interpreter) {
-        SString self = (SString) frame.pop();
+      public SAbstractObject invoke(final SString self) {
         String embedded = self.getEmbeddedString();
 
         for (int i = 0; i < embedded.length(); i++) {
           if (!Character.isDigit(embedded.charAt(i))) {
-            frame.push(universe.falseObject);
-            return;
+            return universe.falseObject;
           }
         }
 
         if (embedded.length() > 0) {
-          frame.push(universe.trueObject);
+          return universe.trueObject;
         } else {
-          frame.push(universe.falseObject);
+          return universe.falseObject;
         }
       }
     });
@@ -0,0 +1,32 @@
+package som.vm;
+
+import som.vmobjects.SAbstractObject;
+import som.vmobjects.SSymbol;
+
+
+/**
+ * The cell that holds the value of a global. A cell stays the same for the
+ * lifetime of its global, so that methods can cache it and read the global
+ * without a lookup. Its value is null as long as the global is not defined.
+ */
+public final class Association {
+
+  private final SSymbol   key;
+  private SAbstractObject value;
+
+  Association(final SSymbol key) {
+    this.key = key;
+  }
+
+  public SSymbol getKey() {
+    return key;
+  }
+
+  public SAbstractObject getValue() {
+    return value;
+  }
+
+  void setValue(final SAbstractObject value) {
+    this.value = value;
+  }
+}
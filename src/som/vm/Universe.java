@@ -27,24 +27,32 @@
 package som.vm;
 
 import static som.interpreter.Bytecodes.HALT;
+import static som.interpreter.Bytecodes.PUSH_BLOCK;
 
+import java.io.File;
 import java.io.IOException;
 import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.StringTokenizer;
 
+import som.compiler.ClassCache;
 import som.compiler.Disassembler;
 import som.compiler.ProgramDefinitionError;
 import som.compiler.SourcecodeCompiler;
+import som.interpreter.Bytecodes;
 import som.interpreter.Frame;
+import som.interpreter.InlineCache;
 import som.interpreter.Interpreter;
+import som.interpreter.LookupCache;
 import som.vmobjects.SAbstractObject;
 import som.vmobjects.SArray;
 import som.vmobjects.SBigInteger;
 import som.vmobjects.SBlock;
 import som.vmobjects.SClass;
 import som.vmobjects.SDouble;
+import som.vmobjects.SInlineObject;
 import som.vmobjects.SInteger;
 import som.vmobjects.SInvokable;
 import som.vmobjects.SMethod;
@@ -109,7 +117,19 @@ public class Universe {
     return interpreter;
   }
 
+  public LookupCache getLookupCache() {
+    return lookupCache;
+  }
+
+  public ClassCache getClassCache() {
+    return classCache;
+  }
+
   public void exit(final long errorCode) {
+    if (printInlineCacheStatistics) {
+      printInlineCacheStatistics();
+    }
+
     // Exit from the Java system
     if (!avoidExit) {
       System.exit((int) errorCode);
@@ -144,6 +164,28 @@ public class Universe {
         gotClasspath = true;
       } else if (arguments[i].equals("-d")) {
         dumpBytecodes = true;
+      } else if (arguments[i].equals("-image")) {
+        if (i + 1 >= arguments.length) {
+          printUsageAndExit();
+        }
+        imageFile = new File(arguments[i + 1]);
+        // Checkstyle: stop
+        ++i; // skip image file
+        // Checkstyle: resume
+      } else if (arguments[i].equals("-cache")) {
+        if (i + 1 >= arguments.length) {
+          printUsageAndExit();
+        }
+        classCache = new ClassCache(this, arguments[i + 1]);
+        // Checkstyle: stop
+        ++i; // skip cache directory
+        // Checkstyle: resume
+      } else if (arguments[i].equals("-nojit")) {
+        interpreter.disableCompilation();
+      } else if (arguments[i].equals("-typedslots")) {
+        interpreter.useTypedSlots();
+      } else if (arguments[i].equals("-icstats")) {
+        printInlineCacheStatistics = true;
       } else {
         remainingArgs[cnt++] = arguments[i];
       }
@@ -252,6 +294,13 @@ public class Universe {
         + ">");
     println("                  set search path for application classes");
     println("    -d            enable disassembling");
+    println("    -cache <directory>");
+    println("                  keep compiled classes in the directory for later runs");
+    println("    -image <file> start from the image of the bootstrapped classes, and");
+    println("                  create the image if it is missing or out of date");
+    println("    -nojit        disable the compilation of hot methods");
+    println("    -typedslots   keep integers and doubles unboxed in frames");
+    println("    -icstats      print the statistics of the inline caches on exit");
 
     // Exit
     System.exit(0);
@@ -333,6 +382,30 @@ public class Universe {
   }
 
   private SAbstractObject initializeObjectSystem() throws ProgramDefinitionError {
+    if (imageFile == null) {
+      return bootstrapObjectSystem();
+    }
+
+    // The classes of the image are read instead of being parsed
+    image = UniverseImage.read(this, imageFile, classPath);
+    SAbstractObject systemObject = bootstrapObjectSystem();
+    boolean outOfDate = image == null || image.isOutOfDate();
+    image = null;
+
+    // None of the loaded methods ran yet, so they can be written as they are
+    if (outOfDate) {
+      List<SClass> classes = new ArrayList<SClass>();
+      for (Association association : globals.values()) {
+        if (association.getValue() instanceof SClass) {
+          classes.add((SClass) association.getValue());
+        }
+      }
+      UniverseImage.write(imageFile, classPath, symbolTable.keySet(), classes);
+    }
+    return systemObject;
+  }
+
+  private SAbstractObject bootstrapObjectSystem() throws ProgramDefinitionError {
     // Allocate the nil object
     nilObject = new SObject(null);
 
@@ -409,6 +482,8 @@ public class Universe {
 
     setGlobal(trueSymbol, trueClass);
     setGlobal(falseSymbol, falseClass);
+
+    interpreter.recordNumberMethods();
     return systemObject;
   }
 
@@ -454,11 +529,18 @@ public class Universe {
     return result;
   }
 
-  public SBlock newBlock(final SMethod method, final Frame context, final int arguments)
+  public SBlock newBlock(final SMethod method, final Frame context)
       throws ProgramDefinitionError {
+    // The block class is resolved when the first block of the method is
+    // created, later blocks only need to be allocated
+    SClass clazz = method.getBlockClass();
+    if (clazz == null) {
+      clazz = getBlockClass(method.getNumberOfArguments());
+      method.setBlockClass(clazz);
+    }
+
     // Allocate a new block and set its class to be the block class
-    SBlock result = new SBlock(method, context, getBlockClass(arguments));
-    return result;
+    return new SBlock(method, context, clazz);
   }
 
   public SClass newClass(final SClass classClass) {
@@ -472,22 +554,8 @@ public class Universe {
 
   public Frame newFrame(final Frame previousFrame, final SMethod method,
       final Frame context) {
-
-    // Compute the maximum number of stack locations (including arguments,
-    // locals and extra buffer to support doesNotUnderstand) and set the number
-    // of indexable fields accordingly
-    long length = method.getNumberOfArguments()
-        + method.getNumberOfLocals().getEmbeddedInteger()
-        + method.getMaximumNumberOfStackElements().getEmbeddedInteger() + 2;
-
-    Frame result = new Frame(nilObject, previousFrame, context, method, length);
-
-    // Reset the stack pointer and the bytecode index
-    result.resetStackPointer();
-    result.setBytecodeIndex(0);
-
-    // Return the freshly allocated frame
-    return result;
+    // Frames are windows into the execution stack of the interpreter
+    return interpreter.getExecutionStack().push(nilObject, previousFrame, method, context);
   }
 
   public SMethod newMethod(final SSymbol signature, final int numberOfBytecodes,
@@ -500,9 +568,15 @@ public class Universe {
   }
 
   public SObject newInstance(final SClass instanceClass) {
-    // Allocate a new instance and set its class to be the given class
-    SObject result = new SObject(instanceClass.getNumberOfInstanceFields(),
-        nilObject);
+    // Allocate a new instance and set its class to be the given class. Small
+    // objects keep their fields inline
+    int numberOfFields = instanceClass.getNumberOfInstanceFields();
+    SObject result;
+    if (numberOfFields <= SInlineObject.MAX_NUMBER_OF_FIELDS) {
+      result = SInlineObject.create(numberOfFields, nilObject);
+    } else {
+      result = new SObject(numberOfFields, nilObject);
+    }
     result.setClass(instanceClass);
 
     // Return the freshly allocated instance
@@ -596,8 +670,9 @@ public class Universe {
   public SAbstractObject getGlobal(final SSymbol name) {
     // Return the global with the given name if it's in the dictionary of
     // globals
-    if (hasGlobal(name)) {
-      return globals.get(name);
+    Association association = globals.get(name);
+    if (association != null) {
+      return association.getValue();
     }
 
     // Global not found
@@ -605,13 +680,25 @@ public class Universe {
   }
 
   public void setGlobal(final SSymbol name, final SAbstractObject value) {
-    // Insert the given value into the dictionary of globals
-    globals.put(name, value);
+    // Update the cell of the global, so that methods that cached it see the
+    // new value
+    getGlobalAssociation(name).setValue(value);
   }
 
   public boolean hasGlobal(final SSymbol name) {
     // Returns if the universe has a value for the global of the given name
-    return globals.containsKey(name);
+    return getGlobal(name) != null;
+  }
+
+  public Association getGlobalAssociation(final SSymbol name) {
+    // Get the cell of the global with the given name, which is created empty
+    // if the global is not defined yet
+    Association association = globals.get(name);
+    if (association == null) {
+      association = new Association(name);
+      globals.put(name, association);
+    }
+    return association;
   }
 
   public SClass getBlockClass() {
@@ -620,6 +707,12 @@ public class Universe {
   }
 
   public SClass getBlockClass(final int numberOfArguments) throws ProgramDefinitionError {
+    // Block classes that were already loaded are in the table
+    if (numberOfArguments < blockClasses.length
+        && blockClasses[numberOfArguments] != null) {
+      return blockClasses[numberOfArguments];
+    }
+
     // Compute the name of the block class with the given number of
     // arguments
     SSymbol name = symbolFor("Block"
@@ -627,19 +720,24 @@ public class Universe {
 
     // Lookup the specific block class in the dictionary of globals and
     // return it
+    SClass result;
     if (hasGlobal(name)) {
-      return (SClass) getGlobal(name);
-    }
+      result = (SClass) getGlobal(name);
+    } else {
+      // Get the block class for blocks with the given number of arguments
+      result = loadClass(name, null);
 
-    // Get the block class for blocks with the given number of arguments
-    SClass result = loadClass(name, null);
+      // Add the appropriate value primitive to the block class
+      result.addInstancePrimitive(SBlock.getEvaluationPrimitive(numberOfArguments,
+          this));
 
-    // Add the appropriate value primitive to the block class
-    result.addInstancePrimitive(SBlock.getEvaluationPrimitive(numberOfArguments,
-        this));
+      // Insert the block class into the dictionary of globals
+      setGlobal(name, result);
+    }
 
-    // Insert the block class into the dictionary of globals
-    setGlobal(name, result);
+    if (numberOfArguments < blockClasses.length) {
+      blockClasses[numberOfArguments] = result;
+    }
 
     // Return the loaded block class
     return result;
@@ -676,15 +774,30 @@ public class Universe {
 
   private SClass loadClass(final SSymbol name, final SClass systemClass)
       throws ProgramDefinitionError {
+    // While the universe is restored, the classes come from the image
+    SClass result = image == null ? null : image.load(name, systemClass);
+    if (result == null) {
+      result = loadClassFromClassPath(name, systemClass);
+    }
+
+    if (result != null && dumpBytecodes) {
+      Disassembler.dump(result.getSOMClass());
+      Disassembler.dump(result);
+    }
+    return result;
+  }
+
+  private SClass loadClassFromClassPath(final SSymbol name, final SClass systemClass)
+      throws ProgramDefinitionError {
     // Try loading the class from all different paths
     for (String cpEntry : classPath) {
       try {
-        // Load the class from a file and return the loaded class
-        SClass result = SourcecodeCompiler.compileClass(cpEntry,
-            name.getEmbeddedString(), systemClass, this);
-        if (dumpBytecodes) {
-          Disassembler.dump(result.getSOMClass());
-          Disassembler.dump(result);
+        // Read the class from the cache, or else compile it from its file
+        SClass result = classCache == null ? null
+            : classCache.load(cpEntry, name.getEmbeddedString(), systemClass);
+        if (result == null) {
+          result = SourcecodeCompiler.compileClass(cpEntry, name.getEmbeddedString(),
+              systemClass, this);
         }
         return result;
 
@@ -714,6 +827,46 @@ public class Universe {
     }
   }
 
+  private void printInlineCacheStatistics() {
+    errorPrintln("Inline caches (site: hits, misses, receiver classes)");
+    for (Association association : globals.values()) {
+      SAbstractObject global = association.getValue();
+      if (global instanceof SClass) {
+        SClass clazz = (SClass) global;
+        printInlineCacheStatistics(clazz);
+        printInlineCacheStatistics(clazz.getSOMClass());
+      }
+    }
+  }
+
+  private void printInlineCacheStatistics(final SClass clazz) {
+    for (int i = 0; i < clazz.getNumberOfInstanceInvokables(); i++) {
+      SInvokable invokable = clazz.getInstanceInvokable(i);
+      if (!invokable.isPrimitive()) {
+        printInlineCacheStatistics((SMethod) invokable);
+      }
+    }
+  }
+
+  private void printInlineCacheStatistics(final SMethod method) {
+    int i = 0;
+    while (i < method.getNumberOfBytecodes()) {
+      byte bytecode = method.getBytecode(i);
+      InlineCache cache = method.getInlineCacheIfPresent(i);
+      if (cache != null) {
+        errorPrintln(method.getHolder().getName().getEmbeddedString() + ">>"
+            + method.getSignature().toString() + " @" + i + " "
+            + method.getConstant(i).toString() + ": " + cache.getHits() + ", "
+            + cache.getMisses() + ", "
+            + (cache.isMegamorphic() ? "megamorphic" : "" + cache.getNumberOfEntries()));
+      }
+      if (bytecode == PUSH_BLOCK) {
+        printInlineCacheStatistics((SMethod) method.getConstant(i));
+      }
+      i += Bytecodes.getBytecodeLength(bytecode);
+    }
+  }
+
   public static void errorPrint(final String msg) {
     // Checkstyle: stop
     System.err.print(msg);
@@ -772,14 +925,22 @@ public class Universe {
   public SClass trueClass;
   public SClass falseClass;
 
-  private final HashMap<SSymbol, SAbstractObject> globals =
-      new HashMap<SSymbol, SAbstractObject>();
+  private final HashMap<SSymbol, Association>     globals =
+      new HashMap<SSymbol, Association>();
+
+  // Block1 to Block3, indexed by the number of arguments including the block
+  private final SClass[]                          blockClasses = new SClass[4];
   private String[]                                classPath;
   private boolean                                 dumpBytecodes;
+  private ClassCache                              classCache;
+  private File                                    imageFile;
+  private UniverseImage                           image;
+  private boolean                                 printInlineCacheStatistics;
 
   public static final String             pathSeparator;
   public static final String             fileSeparator;
   private final Interpreter              interpreter;
+  private final LookupCache              lookupCache = new LookupCache();
   private final HashMap<String, SSymbol> symbolTable;
 
   // TODO: this is not how it is supposed to be... it is just a hack to cope
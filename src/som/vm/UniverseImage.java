@@ -0,0 +1,202 @@
+package som.vm;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+
+import som.compiler.ClassFile;
+import som.compiler.ProgramDefinitionError;
+import som.vmobjects.SClass;
+import som.vmobjects.SSymbol;
+
+
+/**
+ * A snapshot of a bootstrapped universe: the symbol table, and all the
+ * classes that are loaded before the program starts, in the form of
+ * {@link ClassFile}s. Primitives are kept by their signature, and bound by
+ * name again when the classes are read. The whole image is mapped into
+ * memory with one file.
+ *
+ * <p>
+ * The universe is restored by running the bootstrap as usual, where each
+ * class that is loaded is read from the image instead of being parsed. The
+ * globals, the nil, true, false and system objects, and the hierarchy of the
+ * system classes are cheap to create, and are thereby set up exactly as in
+ * a cold start. A class whose source changed is compiled again, and the
+ * image is then written anew.
+ */
+final class UniverseImage {
+
+  private static final int MAGIC = 0x534f4d49; // "SOMI"
+
+  private final ClassFile                classFile;
+  private final String[]                 classPath;
+  private final ByteBuffer               buffer;
+  private final HashMap<String, Integer> offsets;
+  private boolean                        outOfDate;
+
+  private UniverseImage(final Universe universe, final String[] classPath,
+      final ByteBuffer buffer, final HashMap<String, Integer> offsets) {
+    this.classFile = new ClassFile(universe);
+    this.classPath = classPath;
+    this.buffer = buffer;
+    this.offsets = offsets;
+  }
+
+  /**
+   * Returns the image in the given file, or null if there is no readable
+   * image.
+   */
+  static UniverseImage read(final Universe universe, final File file,
+      final String[] classPath) {
+    if (!file.isFile()) {
+      return null;
+    }
+
+    try {
+      ByteBuffer buffer = ClassFile.map(file);
+      if (buffer.getInt() != MAGIC || buffer.getInt() != ClassFile.FORMAT_VERSION) {
+        return null;
+      }
+
+      // the symbols are interned before the classes refer to them
+      for (String symbol : readStrings(buffer)) {
+        universe.symbolFor(symbol);
+      }
+
+      int numberOfClasses = ClassFile.readCount(buffer);
+      HashMap<String, Integer> offsets = new HashMap<String, Integer>();
+      for (int i = 0; i < numberOfClasses; i++) {
+        String name = ClassFile.readString(buffer);
+        offsets.put(name, buffer.getInt());
+      }
+      return new UniverseImage(universe, classPath, buffer.slice(), offsets);
+    } catch (IOException | BufferUnderflowException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Returns the class with the given name from the image, or null if it is
+   * not in the image, its source changed, or the class path now leads to a
+   * different source.
+   */
+  SClass load(final SSymbol name, final SClass systemClass)
+      throws ProgramDefinitionError {
+    Integer offset = offsets.get(name.getEmbeddedString());
+    if (offset == null) {
+      return null;
+    }
+
+    try {
+      ByteBuffer record = buffer.duplicate();
+      record.position(offset);
+      File source = ClassFile.readSource(record);
+      SClass result = null;
+      if (source.equals(findSource(classPath, name.getEmbeddedString()))
+          && ClassFile.isUpToDate(record, source)) {
+        result = classFile.readClass(record, systemClass);
+      }
+      if (result == null) {
+        outOfDate = true;
+      }
+      return result;
+    } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+      outOfDate = true;
+      return null;
+    }
+  }
+
+  boolean isOutOfDate() {
+    return outOfDate;
+  }
+
+  /**
+   * Writes an image of the given classes. They must be loaded already, and
+   * none of their methods may have run. Failing to write the image only
+   * means that the next start is a cold one.
+   */
+  static void write(final File file, final String[] classPath,
+      final Collection<String> symbols, final Collection<SClass> classes) {
+    try {
+      // the classes are written first, to know where each of them starts
+      ByteArrayOutputStream records = new ByteArrayOutputStream();
+      DataOutputStream recordsOut = new DataOutputStream(records);
+      List<String> names = new ArrayList<String>();
+      List<Integer> offsets = new ArrayList<Integer>();
+      for (SClass clazz : classes) {
+        String name = clazz.getName().getEmbeddedString();
+        File source = findSource(classPath, name);
+        if (source == null) {
+          continue;
+        }
+        names.add(name);
+        offsets.add(recordsOut.size());
+        ClassFile.writeSource(recordsOut, source);
+        ClassFile.writeClass(recordsOut, clazz);
+      }
+
+      File directory = file.getAbsoluteFile().getParentFile();
+      File temporary = File.createTempFile(file.getName(), ".tmp", directory);
+      try (DataOutputStream out = new DataOutputStream(
+          new BufferedOutputStream(new FileOutputStream(temporary)))) {
+        out.writeInt(MAGIC);
+        out.writeInt(ClassFile.FORMAT_VERSION);
+        writeStrings(out, symbols);
+        out.writeInt(names.size());
+        for (int i = 0; i < names.size(); i++) {
+          ClassFile.writeString(out, names.get(i));
+          out.writeInt(offsets.get(i));
+        }
+        records.writeTo(out);
+      }
+
+      try {
+        Files.move(temporary.toPath(), file.toPath(),
+            StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } catch (IOException e) {
+        temporary.delete();
+      }
+    } catch (IOException e) {
+      // the next start bootstraps from source again
+    }
+  }
+
+  private static File findSource(final String[] classPath, final String name) {
+    // the same file that loading the class finds first
+    for (String cpEntry : classPath) {
+      File source = new File(cpEntry + Universe.fileSeparator + name + ".som");
+      if (source.isFile()) {
+        return source.getAbsoluteFile();
+      }
+    }
+    return null;
+  }
+
+  private static void writeStrings(final DataOutputStream out,
+      final Collection<String> strings) throws IOException {
+    out.writeInt(strings.size());
+    for (String string : strings) {
+      ClassFile.writeString(out, string);
+    }
+  }
+
+  private static String[] readStrings(final ByteBuffer buffer) throws IOException {
+    String[] strings = new String[ClassFile.readCount(buffer)];
+    for (int i = 0; i < strings.length; i++) {
+      strings[i] = ClassFile.readString(buffer);
+    }
+    return strings;
+  }
+}
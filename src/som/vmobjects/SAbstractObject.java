@@ -33,6 +33,15 @@ public abstract class SAbstractObject {
 
   public abstract SClass getSOMClass(Universe universe);
 
+  /**
+   * Tells whether the other object is identical to this one. Numbers that
+   * are not the same object can still be identical, so they override this,
+   * together with {@link #hashCode()}.
+   */
+  public boolean isIdentical(final SAbstractObject other) {
+    return this == other;
+  }
+
   public void send(final String selectorString, final SAbstractObject[] arguments,
       final Universe universe, final Interpreter interpreter) {
     // Turn the selector string into a selector
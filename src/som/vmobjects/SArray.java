@@ -24,30 +24,156 @@
 
 package som.vmobjects;
 
+import java.util.Arrays;
+import java.util.BitSet;
+
 import som.vm.Universe;
 
 
+/**
+ * An array, whose elements are stored depending on their values. An array
+ * that only contains nil has no storage. Integers and doubles are stored
+ * unboxed in an array of longs or doubles, as long as all other elements are
+ * of the same kind or nil. Storing any other value switches the array to
+ * objects for good.
+ */
 public class SArray extends SAbstractObject {
 
-  public SArray(final SObject nilObject, long numElements) {
-    indexableFields = new SAbstractObject[(int) numElements];
+  private enum Storage {
+    EMPTY, LONG, DOUBLE, OBJECT
+  }
 
-    // Clear each and every field by putting nil into them
-    for (int i = 0; i < getNumberOfIndexableFields(); i++) {
-      setIndexableField(i, nilObject);
-    }
+  public SArray(final SObject nilObject, long numElements) {
+    this.nilObject = nilObject;
+    this.length = (int) numElements;
+    this.storage = Storage.EMPTY;
   }
 
   public SAbstractObject getIndexableField(long index) {
-    return indexableFields[(int) index];
+    switch (storage) {
+      case EMPTY:
+        checkIndex(index);
+        return nilObject;
+      case LONG:
+        if (nils != null && nils.get((int) index)) {
+          return nilObject;
+        }
+        return SInteger.getInteger(longs[(int) index]);
+      case DOUBLE:
+        if (nils != null && nils.get((int) index)) {
+          return nilObject;
+        }
+        return new SDouble(doubles[(int) index]);
+      default:
+        return objects[(int) index];
+    }
   }
 
   public void setIndexableField(long index, SAbstractObject value) {
-    indexableFields[(int) index] = value;
+    switch (storage) {
+      case EMPTY:
+        checkIndex(index);
+        if (value == nilObject) {
+          return;
+        }
+        if (value instanceof SInteger) {
+          longs = new long[length];
+          storage = Storage.LONG;
+        } else if (value instanceof SDouble) {
+          doubles = new double[length];
+          storage = Storage.DOUBLE;
+        } else {
+          objects = new SAbstractObject[length];
+          Arrays.fill(objects, nilObject);
+          storage = Storage.OBJECT;
+          objects[(int) index] = value;
+          return;
+        }
+        nils = new BitSet(length);
+        nils.set(0, length);
+        numberOfNils = length;
+        break;
+      case LONG:
+        if (value instanceof SInteger) {
+          break;
+        }
+        if (value == nilObject) {
+          setNil((int) index);
+          return;
+        }
+        storeObjects();
+        break;
+      case DOUBLE:
+        if (value instanceof SDouble) {
+          break;
+        }
+        if (value == nilObject) {
+          setNil((int) index);
+          return;
+        }
+        storeObjects();
+        break;
+      default:
+        break;
+    }
+
+    switch (storage) {
+      case LONG:
+        longs[(int) index] = ((SInteger) value).getEmbeddedInteger();
+        clearNil((int) index);
+        break;
+      case DOUBLE:
+        doubles[(int) index] = ((SDouble) value).getEmbeddedDouble();
+        clearNil((int) index);
+        break;
+      default:
+        objects[(int) index] = value;
+        break;
+    }
+  }
+
+  private void setNil(final int index) {
+    checkIndex(index);
+    if (nils == null) {
+      nils = new BitSet(length);
+    }
+    if (!nils.get(index)) {
+      nils.set(index);
+      numberOfNils++;
+    }
+  }
+
+  private void clearNil(final int index) {
+    // Arrays without nils do not need to track them
+    if (nils != null && nils.get(index)) {
+      nils.clear(index);
+      numberOfNils--;
+      if (numberOfNils == 0) {
+        nils = null;
+      }
+    }
+  }
+
+  private void storeObjects() {
+    SAbstractObject[] result = new SAbstractObject[length];
+    for (int i = 0; i < length; i++) {
+      result[i] = getIndexableField(i);
+    }
+    objects = result;
+    longs = null;
+    doubles = null;
+    nils = null;
+    storage = Storage.OBJECT;
+  }
+
+  private void checkIndex(final long index) {
+    if (index < 0 || index >= length) {
+      throw new ArrayIndexOutOfBoundsException((int) index);
+    }
   }
 
   public int getNumberOfIndexableFields() {
-    return indexableFields.length;
+    return length;
   }
 
   public SArray copyAndExtendWith(SAbstractObject value, final Universe universe) {
@@ -76,6 +202,17 @@ public class SArray extends SAbstractObject {
     return universe.arrayClass;
   }
 
-  // Private array of indexable fields
-  private final SAbstractObject[] indexableFields;
+  private final SObject nilObject;
+  private final int     length;
+
+  private Storage storage;
+
+  // Only the storage of the current strategy is allocated
+  private SAbstractObject[] objects;
+  private long[]            longs;
+  private double[]          doubles;
+
+  // The elements of an array of longs or doubles that are nil, if any
+  private BitSet nils;
+  private int    numberOfNils;
 }
@@ -25,12 +25,21 @@
 package som.vmobjects;
 
 import java.lang.reflect.Constructor;
+import java.util.ArrayList;
 import java.util.HashMap;
 
 import som.primitives.Primitives;
 import som.vm.Universe;
 
 
+/**
+ * A class holds the invokables of its instances. Lookups are cached in the
+ * class itself, and in the caches of the interpreter, which check the
+ * {@link #getVersion() version} of the receiver class. Installing an
+ * invokable in a class changes the version of the class and of all its
+ * subclasses, since their lookups may now find it, and leaves all other
+ * classes and their cached lookups alone.
+ */
 public class SClass extends SObject {
 
   private final Universe universe;
@@ -60,8 +69,17 @@ public class SClass extends SObject {
   }
 
   public void setSuperClass(final SObject value) {
+    // The lookups of this class now go to the new super class
+    if (superclass instanceof SClass) {
+      ((SClass) superclass).subclasses.remove(this);
+    }
+    if (value instanceof SClass) {
+      ((SClass) value).subclasses.add(this);
+    }
+
     // Set the super class by writing to the field with super class index
     superclass = value;
+    invalidateLookups();
   }
 
   public boolean hasSuperClass() {
@@ -106,6 +124,7 @@ public class SClass extends SObject {
     for (int i = 0; i < getNumberOfInstanceInvokables(); i++) {
       getInstanceInvokable(i).setHolder(this);
     }
+    invalidateLookups();
   }
 
   public int getNumberOfInstanceInvokables() {
@@ -166,6 +185,21 @@ public class SClass extends SObject {
     return null;
   }
 
+  public int getVersion() {
+    // Changes whenever a lookup in this class may find a different invokable
+    return version;
+  }
+
+  private void invalidateLookups() {
+    // Cached lookups of this class and its subclasses may find a different
+    // invokable, other classes are not affected
+    version++;
+    invokablesTable.clear();
+    for (SClass subclass : subclasses) {
+      subclass.invalidateLookups();
+    }
+  }
+
   public int lookupFieldIndex(final SSymbol fieldName) {
     // Lookup field with given name in array of instance fields
     for (int i = getNumberOfInstanceFields() - 1; i >= 0; i--) {
@@ -188,6 +222,7 @@ public class SClass extends SObject {
       // Replace the invokable with the given one if the signature matches
       if (invokable.getSignature() == value.getSignature()) {
         setInstanceInvokable(i, value);
+        invalidateLookups();
         return false;
       }
     }
@@ -300,6 +335,10 @@ public class SClass extends SObject {
   // Mapping of symbols to invokables
   private final HashMap<SSymbol, SInvokable> invokablesTable;
 
+  // The classes that inherit from this one, whose lookups go through it
+  private final ArrayList<SClass> subclasses = new ArrayList<SClass>();
+  private int                     version;
+
   // Static field indices and number of class fields
   static final int numberOfClassFields = numberOfObjectFields;
 }
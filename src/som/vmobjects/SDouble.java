@@ -40,6 +40,28 @@ public final class SDouble extends SNumber {
     return embeddedDouble;
   }
 
+  /**
+   * Doubles are boxed again whenever they are read from unboxed storage, so
+   * doubles of the same value are identical.
+   */
+  @Override
+  public boolean isIdentical(final SAbstractObject other) {
+    return equals(other);
+  }
+
+  @Override
+  public boolean equals(final Object other) {
+    return other instanceof SDouble
+        && Double.doubleToLongBits(((SDouble) other).embeddedDouble) == Double
+            .doubleToLongBits(embeddedDouble);
+  }
+
+  @Override
+  public int hashCode() {
+    // identical doubles need to have the same hash code
+    return Double.hashCode(embeddedDouble);
+  }
+
   @Override
   public SClass getSOMClass(final Universe universe) {
     return universe.doubleClass;
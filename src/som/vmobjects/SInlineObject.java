@@ -0,0 +1,226 @@
+package som.vmobjects;
+
+/**
+ * An object whose fields are stored in the object itself, instead of an
+ * array. Most objects have only a few fields, and this saves the array and
+ * the load of the array for each access of a field. Classes with more than
+ * {@link #MAX_NUMBER_OF_FIELDS} fields keep using the array of
+ * {@link SObject}.
+ */
+public abstract class SInlineObject extends SObject {
+
+  public static final int MAX_NUMBER_OF_FIELDS = 4;
+
+  public static SInlineObject create(final int numberOfFields, final SObject nilObject) {
+    switch (numberOfFields) {
+      case 0:
+        return new Fields0();
+      case 1:
+        return new Fields1(nilObject);
+      case 2:
+        return new Fields2(nilObject);
+      case 3:
+        return new Fields3(nilObject);
+      case 4:
+        return new Fields4(nilObject);
+      default:
+        throw new IllegalArgumentException(
+            "Objects with " + numberOfFields + " fields are not inlined");
+    }
+  }
+
+  private static ArrayIndexOutOfBoundsException noField(final long index) {
+    return new ArrayIndexOutOfBoundsException((int) index);
+  }
+
+  private static final class Fields0 extends SInlineObject {
+    @Override
+    public int getNumberOfFields() {
+      return 0;
+    }
+
+    @Override
+    public SAbstractObject getField(final long index) {
+      throw noField(index);
+    }
+
+    @Override
+    public void setField(final long index, final SAbstractObject value) {
+      throw noField(index);
+    }
+  }
+
+  private static final class Fields1 extends SInlineObject {
+    private SAbstractObject field0;
+
+    Fields1(final SObject nilObject) {
+      field0 = nilObject;
+    }
+
+    @Override
+    public int getNumberOfFields() {
+      return 1;
+    }
+
+    @Override
+    public SAbstractObject getField(final long index) {
+      if (index == 0) {
+        return field0;
+      }
+      throw noField(index);
+    }
+
+    @Override
+    public void setField(final long index, final SAbstractObject value) {
+      if (index == 0) {
+        field0 = value;
+        return;
+      }
+      throw noField(index);
+    }
+  }
+
+  private static final class Fields2 extends SInlineObject {
+    private SAbstractObject field0;
+    private SAbstractObject field1;
+
+    Fields2(final SObject nilObject) {
+      field0 = nilObject;
+      field1 = nilObject;
+    }
+
+    @Override
+    public int getNumberOfFields() {
+      return 2;
+    }
+
+    @Override
+    public SAbstractObject getField(final long index) {
+      switch ((int) index) {
+        case 0:
+          return field0;
+        case 1:
+          return field1;
+        default:
+          throw noField(index);
+      }
+    }
+
+    @Override
+    public void setField(final long index, final SAbstractObject value) {
+      switch ((int) index) {
+        case 0:
+          field0 = value;
+          break;
+        case 1:
+          field1 = value;
+          break;
+        default:
+          throw noField(index);
+      }
+    }
+  }
+
+  private static final class Fields3 extends SInlineObject {
+    private SAbstractObject field0;
+    private SAbstractObject field1;
+    private SAbstractObject field2;
+
+    Fields3(final SObject nilObject) {
+      field0 = nilObject;
+      field1 = nilObject;
+      field2 = nilObject;
+    }
+
+    @Override
+    public int getNumberOfFields() {
+      return 3;
+    }
+
+    @Override
+    public SAbstractObject getField(final long index) {
+      switch ((int) index) {
+        case 0:
+          return field0;
+        case 1:
+          return field1;
+        case 2:
+          return field2;
+        default:
+          throw noField(index);
+      }
+    }
+
+    @Override
+    public void setField(final long index, final SAbstractObject value) {
+      switch ((int) index) {
+        case 0:
+          field0 = value;
+          break;
+        case 1:
+          field1 = value;
+          break;
+        case 2:
+          field2 = value;
+          break;
+        default:
+          throw noField(index);
+      }
+    }
+  }
+
+  private static final class Fields4 extends SInlineObject {
+    private SAbstractObject field0;
+    private SAbstractObject field1;
+    private SAbstractObject field2;
+    private SAbstractObject field3;
+
+    Fields4(final SObject nilObject) {
+      field0 = nilObject;
+      field1 = nilObject;
+      field2 = nilObject;
+      field3 = nilObject;
+    }
+
+    @Override
+    public int getNumberOfFields() {
+      return 4;
+    }
+
+    @Override
+    public SAbstractObject getField(final long index) {
+      switch ((int) index) {
+        case 0:
+          return field0;
+        case 1:
+          return field1;
+        case 2:
+          return field2;
+        case 3:
+          return field3;
+        default:
+          throw noField(index);
+      }
+    }
+
+    @Override
+    public void setField(final long index, final SAbstractObject value) {
+      switch ((int) index) {
+        case 0:
+          field0 = value;
+          break;
+        case 1:
+          field1 = value;
+          break;
+        case 2:
+          field2 = value;
+          break;
+        case 3:
+          field3 = value;
+          break;
+        default:
+          throw noField(index);
+      }
+    }
+  }
+}
@@ -26,8 +26,6 @@
 package som.vmobjects;
 
 import java.math.BigInteger;
-import java.util.HashMap;
-import java.util.Map;
 
 import som.vm.Universe;
 
@@ -35,14 +33,26 @@ import som.vm.Universe;
 public final class SInteger extends SNumber {
 
   /**
-   * Language convention requires integers up to this value to be identical.
+   * Bounds of the range of preallocated integers, which covers the values
+   * most programs use for counters, indexes, and sizes.
    */
-  private static final long MAX_IDENTICAL_INT = 1073741823L;
+  private static final long MIN_CACHED_INT = -1024L;
+  private static final long MAX_CACHED_INT = 1024L;
 
   /**
-   * Cache to store integers up to {@link #MAX_IDENTICAL_INT}.
+   * Cache to store the integers between {@link #MIN_CACHED_INT} and
+   * {@link #MAX_CACHED_INT}. Integers outside of this range are allocated
+   * on demand. Language convention requires integers of the same value to be
+   * identical, which is ensured by {@link #isIdentical}.
    */
-  private static Map<Long, SInteger> CACHE = new HashMap<>();
+  private static final SInteger[] CACHE =
+      new SInteger[(int) (MAX_CACHED_INT - MIN_CACHED_INT + 1)];
+
+  static {
+    for (int i = 0; i < CACHE.length; i++) {
+      CACHE[i] = new SInteger(MIN_CACHED_INT + i);
+    }
+  }
 
   // Private variable holding the embedded integer
   private final long embeddedInteger;
@@ -52,10 +62,10 @@ public final class SInteger extends SNumber {
   }
 
   public static SInteger getInteger(final long value) {
-    if (value > MAX_IDENTICAL_INT) {
-      return new SInteger(value);
+    if (MIN_CACHED_INT <= value && value <= MAX_CACHED_INT) {
+      return CACHE[(int) (value - MIN_CACHED_INT)];
     }
-    return CACHE.computeIfAbsent(value, SInteger::new);
+    return new SInteger(value);
   }
 
   public long getEmbeddedInteger() {
@@ -68,6 +78,23 @@ public final class SInteger extends SNumber {
     return "" + embeddedInteger;
   }
 
+  @Override
+  public boolean isIdentical(final SAbstractObject other) {
+    return equals(other);
+  }
+
+  @Override
+  public boolean equals(final Object other) {
+    return other instanceof SInteger
+        && ((SInteger) other).embeddedInteger == embeddedInteger;
+  }
+
+  @Override
+  public int hashCode() {
+    // identical integers need to have the same hash code
+    return Long.hashCode(embeddedInteger);
+  }
+
   @Override
   public SClass getSOMClass(final Universe universe) {
     return universe.integerClass;
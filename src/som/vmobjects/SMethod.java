@@ -26,8 +26,12 @@ package som.vmobjects;
 
 import java.util.List;
 
+import som.interpreter.Bytecodes;
+import som.interpreter.CompiledMethod;
 import som.interpreter.Frame;
+import som.interpreter.InlineCache;
 import som.interpreter.Interpreter;
+import som.vm.Association;
 import som.vm.Universe;
 
 
@@ -39,8 +43,7 @@ public class SMethod extends SAbstractObject implements SInvokable {
     this.signature = signature;
     this.numberOfLocals = numberOfLocals;
     this.bytecodes = new byte[numberOfBytecodes];
-    inlineCacheClass = new SClass[numberOfBytecodes];
-    inlineCacheInvokable = new SInvokable[numberOfBytecodes];
+    inlineCaches = new InlineCache[numberOfBytecodes];
     maximumNumberOfStackElements = maxNumStackElements;
     this.literals = new SAbstractObject[numberOfLiterals];
 
@@ -94,7 +97,16 @@ public class SMethod extends SAbstractObject implements SInvokable {
 
   public SAbstractObject getConstant(int bytecodeIndex) {
     // Get the constant associated to a given bytecode index
-    return literals[getBytecode(bytecodeIndex + 1)];
+    return literals[getBytecode(bytecodeIndex + 1) & 0xFF];
+  }
+
+  public int getJumpOffset(int bytecodeIndex) {
+    // Get the offset of the jump bytecode at the given index, which is
+    // stored in its last two bytes as an unsigned 16-bit value, low byte first
+    int offsetIndex = bytecodeIndex
+        + Bytecodes.getBytecodeLength(getBytecode(bytecodeIndex)) - 2;
+    return (getBytecode(offsetIndex) & 0xFF)
+        | ((getBytecode(offsetIndex + 1) & 0xFF) << 8);
   }
 
   public int getNumberOfArguments() {
@@ -112,6 +124,14 @@ public class SMethod extends SAbstractObject implements SInvokable {
     return bytecodes[index];
   }
 
+  public byte[] getBytecodes() {
+    return bytecodes;
+  }
+
+  public SAbstractObject[] getLiterals() {
+    return literals;
+  }
+
   public void setBytecode(int index, byte value) {
     // Set the bytecode at the given index to the given value
     bytecodes[index] = value;
@@ -130,17 +150,85 @@ public class SMethod extends SAbstractObject implements SInvokable {
         + getSignature().toString() + ")";
   }
 
-  public SClass getInlineCacheClass(int bytecodeIndex) {
-    return inlineCacheClass[bytecodeIndex];
+  public InlineCache getInlineCache(int bytecodeIndex) {
+    // Get the inline cache of the send at the given index, which is created
+    // on the first send
+    InlineCache cache = inlineCaches[bytecodeIndex];
+    if (cache == null) {
+      cache = new InlineCache();
+      inlineCaches[bytecodeIndex] = cache;
+    }
+    return cache;
+  }
+
+  public InlineCache getInlineCacheIfPresent(int bytecodeIndex) {
+    return inlineCaches[bytecodeIndex];
+  }
+
+  public Association getCachedGlobal(final int bytecodeIndex) {
+    // Get the cell of the global read at the given index, if it was read before
+    return globalAssociations == null ? null : globalAssociations[bytecodeIndex];
+  }
+
+  public void cacheGlobal(final int bytecodeIndex, final Association association) {
+    if (globalAssociations == null) {
+      globalAssociations = new Association[bytecodes.length];
+    }
+    globalAssociations[bytecodeIndex] = association;
+  }
+
+  public SInvokable getCachedSuperSend(final int bytecodeIndex, final int version) {
+    // Get the invokable of the super send at the given index, unless methods
+    // were installed in the super class of the holder since it was cached
+    if (superSendInvokables == null || superSendVersions[bytecodeIndex] != version) {
+      return null;
+    }
+    return superSendInvokables[bytecodeIndex];
+  }
+
+  public void cacheSuperSend(final int bytecodeIndex, final SInvokable invokable,
+      final int version) {
+    if (superSendInvokables == null) {
+      superSendInvokables = new SInvokable[bytecodes.length];
+      superSendVersions = new int[bytecodes.length];
+    }
+    superSendInvokables[bytecodeIndex] = invokable;
+    superSendVersions[bytecodeIndex] = version;
+  }
+
+  public boolean hasCapturingBlocks() {
+    return capturingBlocks;
+  }
+
+  public void setHasCapturingBlocks(final boolean value) {
+    // Set whether blocks created by this method access its locals, assign
+    // its arguments, or return non-locally
+    capturingBlocks = value;
+  }
+
+  public boolean isClean() {
+    return clean;
+  }
+
+  public void setClean() {
+    // Mark this block method as not referring to the context of its blocks
+    clean = true;
+  }
+
+  public SBlock getCleanBlock() {
+    return cleanBlock;
+  }
+
+  public void setCleanBlock(final SBlock value) {
+    cleanBlock = value;
   }
 
-  public SInvokable getInlineCacheInvokable(int bytecodeIndex) {
-    return inlineCacheInvokable[bytecodeIndex];
+  public SClass getBlockClass() {
+    return blockClass;
   }
 
-  public void setInlineCache(int bytecodeIndex, SClass receiverClass, SInvokable invokable) {
-    inlineCacheClass[bytecodeIndex] = receiverClass;
-    inlineCacheInvokable[bytecodeIndex] = invokable;
+  public void setBlockClass(final SClass value) {
+    blockClass = value;
   }
 
   @Override
@@ -148,17 +236,64 @@ public class SMethod extends SAbstractObject implements SInvokable {
     return universe.methodClass;
   }
 
+  public int incrementInvocationCount() {
+    return ++invocationCount;
+  }
+
+  public int incrementBackEdgeCount() {
+    return ++backEdgeCount;
+  }
+
+  public CompiledMethod getCompiledMethod() {
+    return compiledMethod;
+  }
+
+  public void setCompiledMethod(final CompiledMethod value) {
+    compiledMethod = value;
+  }
+
+  public boolean isCompilable() {
+    return compilable;
+  }
+
+  public void setNotCompilable() {
+    compilable = false;
+  }
+
   // Private variable holding byte array of bytecodes
-  private final byte[]       bytecodes;
-  private final SClass[]     inlineCacheClass;
-  private final SInvokable[] inlineCacheInvokable;
+  private final byte[]        bytecodes;
+  private final InlineCache[] inlineCaches;
+
+  // Cells of the globals the method reads, allocated on the first read
+  private Association[] globalAssociations;
+
+  // Invokables of the super sends, with the version of the super class of
+  // the holder they were found in, allocated once the method does a super send
+  private SInvokable[] superSendInvokables;
+  private int[]        superSendVersions;
 
   private final SAbstractObject[] literals;
 
+  // Blocks of clean block methods have no context, and are allocated once
+  private boolean clean;
+  private SBlock  cleanBlock;
+
+  // Class of the blocks of this block method, resolved with the first block
+  private SClass blockClass;
+
+  // Whether the frames of this method need to be materialized for blocks
+  private boolean capturingBlocks = true;
+
   private final SSymbol signature;
   private SClass        holder;
 
   // Meta information
   private final SInteger numberOfLocals;
   private final SInteger maximumNumberOfStackElements;
+
+  // Counters to find hot methods, and their JVM code once they are compiled
+  private int            invocationCount;
+  private int            backEdgeCount;
+  private CompiledMethod compiledMethod;
+  private boolean        compilable = true;
 }
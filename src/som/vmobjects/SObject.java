@@ -23,6 +23,13 @@ public class SObject extends SAbstractObject {
     }
   }
 
+  /**
+   * For objects that keep their fields themselves, see {@link SInlineObject}.
+   */
+  protected SObject() {
+    fields = null;
+  }
+
   public SClass getSOMClass() {
     return clazz;
   }
@@ -88,4 +88,80 @@ public abstract class SPrimitive extends SAbstractObject implements SInvokable {
 
   private final SSymbol signature;
   private SClass        holder;
+
+  /**
+   * A primitive that only depends on its receiver. The interpreter calls it
+   * directly with the receiver, and replaces the receiver on the stack with
+   * the result.
+   */
+  public abstract static class Unary<R extends SAbstractObject> extends SPrimitive {
+
+    public Unary(final String signatureString, final Universe universe) {
+      super(signatureString, universe);
+    }
+
+    public abstract SAbstractObject invoke(R receiver);
+
+    @SuppressWarnings("unchecked")
+    public final SAbstractObject invokeUnary(final SAbstractObject receiver) {
+      return invoke((R) receiver);
+    }
+
+    @Override
+    public final void invoke(final Frame frame, final Interpreter interpreter) {
+      frame.setStackElement(0, invokeUnary(frame.getStackElement(0)));
+    }
+  }
+
+  /**
+   * A primitive that only depends on its receiver and one argument.
+   */
+  public abstract static class Binary<R extends SAbstractObject,
+      A extends SAbstractObject> extends SPrimitive {
+
+    public Binary(final String signatureString, final Universe universe) {
+      super(signatureString, universe);
+    }
+
+    public abstract SAbstractObject invoke(R receiver, A argument);
+
+    @SuppressWarnings("unchecked")
+    public final SAbstractObject invokeBinary(final SAbstractObject receiver,
+        final SAbstractObject argument) {
+      return invoke((R) receiver, (A) argument);
+    }
+
+    @Override
+    public final void invoke(final Frame frame, final Interpreter interpreter) {
+      SAbstractObject argument = frame.pop();
+      frame.setStackElement(0, invokeBinary(frame.getStackElement(0), argument));
+    }
+  }
+
+  /**
+   * A primitive that only depends on its receiver and two arguments.
+   */
+  public abstract static class Ternary<R extends SAbstractObject, A1 extends SAbstractObject,
+      A2 extends SAbstractObject> extends SPrimitive {
+
+    public Ternary(final String signatureString, final Universe universe) {
+      super(signatureString, universe);
+    }
+
+    public abstract SAbstractObject invoke(R receiver, A1 argument1, A2 argument2);
+
+    @SuppressWarnings("unchecked")
+    public final SAbstractObject invokeTernary(final SAbstractObject receiver,
+        final SAbstractObject argument1, final SAbstractObject argument2) {
+      return invoke((R) receiver, (A1) argument1, (A2) argument2);
+    }
+
+    @Override
+    public final void invoke(final Frame frame, final Interpreter interpreter) {
+      SAbstractObject argument2 = frame.pop();
+      SAbstractObject argument1 = frame.pop();
+      frame.setStackElement(0,
+          invokeTernary(frame.getStackElement(0), argument1, argument2));
+    }
+  }
 }
@@ -24,22 +24,99 @@
 
 package som.vmobjects;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
+
 import som.vm.Universe;
 
 
+/**
+ * A string, which is either flat, the concatenation of two strings, or a
+ * view of a part of a flat string. Concatenations and views are flattened
+ * once their characters are needed, so that building a string with
+ * repeated concatenations takes linear instead of quadratic time, and
+ * substrings share the characters of their string until then.
+ */
 public class SString extends SAbstractObject {
 
   public SString(final String value) {
     string = value;
+    length = value.length();
+  }
+
+  private SString(final SString left, final SString right) {
+    this.left = left;
+    this.right = right;
+    this.length = left.length + right.length;
+  }
+
+  private SString(final String base, final int offset, final int length) {
+    this.base = base;
+    this.offset = offset;
+    this.length = length;
   }
 
   public String getEmbeddedString() {
+    if (string == null) {
+      flatten();
+    }
     return string;
   }
 
+  public int getLength() {
+    return length;
+  }
+
+  public SString concatenate(final SString other) {
+    return new SString(this, other);
+  }
+
+  /**
+   * Returns the characters from start up to, but not including, end, which
+   * share the characters of this string.
+   */
+  public SString substring(final int start, final int end) {
+    if (start < 0 || end > length || start > end) {
+      throw new IndexOutOfBoundsException("substring " + start + " to " + end);
+    }
+    if (base != null) {
+      return new SString(base, offset + start, end - start);
+    }
+    return new SString(getEmbeddedString(), start, end - start);
+  }
+
+  private void flatten() {
+    if (base != null) {
+      string = base.substring(offset, offset + length);
+      base = null;
+      return;
+    }
+
+    // Concatenations are usually nested deeply on the left, and are walked
+    // without recursion
+    StringBuilder builder = new StringBuilder(length);
+    Deque<SString> pending = new ArrayDeque<>();
+    pending.push(this);
+    while (!pending.isEmpty()) {
+      SString part = pending.pop();
+      if (part.string != null) {
+        builder.append(part.string);
+      } else if (part.base != null) {
+        builder.append(part.base, part.offset, part.offset + part.length);
+      } else {
+        pending.push(part.right);
+        pending.push(part.left);
+      }
+    }
+
+    string = builder.toString();
+    left = null;
+    right = null;
+  }
+
   @Override
   public String toString() {
-    return "\"" + string + "\"";
+    return "\"" + getEmbeddedString() + "\"";
   }
 
   @Override
@@ -47,6 +124,15 @@ public class SString extends SAbstractObject {
     return universe.stringClass;
   }
 
-  // Private variable holding the string associated to this symbol
-  private final String string;
+  // The characters of the string, once it is flat
+  private String string;
+  private final int length;
+
+  // The parts of a concatenation
+  private SString left;
+  private SString right;
+
+  // The flat string of which this string is a view
+  private String base;
+  private int    offset;
 }
@@ -0,0 +1,135 @@
+package som.vmobjects;
+
+import java.util.List;
+
+import som.interpreter.Frame;
+import som.interpreter.Interpreter;
+
+
+/**
+ * A method whose body only reads a field, writes an argument into a field,
+ * or returns an argument or a literal. Such a method does not need a frame:
+ * it takes the receiver and the arguments from the stack of the sender, and
+ * pushes its result there directly. It keeps its bytecodes, so that it can
+ * be disassembled like any other method.
+ */
+public abstract class STrivialMethod extends SMethod {
+
+  protected STrivialMethod(final SObject nilObject, final SSymbol signature,
+      final int numberOfBytecodes, final SInteger numberOfLocals,
+      final SInteger maxNumStackElements, final int numberOfLiterals,
+      final List<SAbstractObject> literals) {
+    super(nilObject, signature, numberOfBytecodes, numberOfLocals, maxNumStackElements,
+        numberOfLiterals, literals);
+  }
+
+  @Override
+  public void invoke(final Frame frame, final Interpreter interpreter) {
+    // The receiver and the arguments are at the top of the stack of the
+    // sender, and are replaced by the result
+    int numberOfArguments = getNumberOfArguments();
+    SAbstractObject result = evaluate(frame, numberOfArguments);
+    for (int i = 0; i < numberOfArguments; i++) {
+      frame.pop();
+    }
+    frame.push(result);
+  }
+
+  protected abstract SAbstractObject evaluate(Frame frame, int numberOfArguments);
+
+  protected static SAbstractObject getArgument(final Frame frame,
+      final int numberOfArguments, final int index) {
+    return frame.getStackElement(numberOfArguments - 1 - index);
+  }
+
+  /**
+   * A method with the body {@code ^field}.
+   */
+  public static final class FieldRead extends STrivialMethod {
+    private final int fieldIndex;
+
+    public FieldRead(final SObject nilObject, final SSymbol signature,
+        final int numberOfBytecodes, final SInteger numberOfLocals,
+        final SInteger maxNumStackElements, final int numberOfLiterals,
+        final List<SAbstractObject> literals, final int fieldIndex) {
+      super(nilObject, signature, numberOfBytecodes, numberOfLocals, maxNumStackElements,
+          numberOfLiterals, literals);
+      this.fieldIndex = fieldIndex;
+    }
+
+    @Override
+    protected SAbstractObject evaluate(final Frame frame, final int numberOfArguments) {
+      SObject self = (SObject) getArgument(frame, numberOfArguments, 0);
+      return self.getField(fieldIndex);
+    }
+  }
+
+  /**
+   * A method with the body {@code field := argument}, which returns self.
+   */
+  public static final class FieldWrite extends STrivialMethod {
+    private final int fieldIndex;
+    private final int argumentIndex;
+
+    public FieldWrite(final SObject nilObject, final SSymbol signature,
+        final int numberOfBytecodes, final SInteger numberOfLocals,
+        final SInteger maxNumStackElements, final int numberOfLiterals,
+        final List<SAbstractObject> literals, final int fieldIndex,
+        final int argumentIndex) {
+      super(nilObject, signature, numberOfBytecodes, numberOfLocals, maxNumStackElements,
+          numberOfLiterals, literals);
+      this.fieldIndex = fieldIndex;
+      this.argumentIndex = argumentIndex;
+    }
+
+    @Override
+    protected SAbstractObject evaluate(final Frame frame, final int numberOfArguments) {
+      SObject self = (SObject) getArgument(frame, numberOfArguments, 0);
+      self.setField(fieldIndex, getArgument(frame, numberOfArguments, argumentIndex));
+      return self;
+    }
+  }
+
+  /**
+   * A method with the body {@code ^self} or {@code ^argument}, which includes
+   * methods with an empty body.
+   */
+  public static final class ArgumentReturn extends STrivialMethod {
+    private final int argumentIndex;
+
+    public ArgumentReturn(final SObject nilObject, final SSymbol signature,
+        final int numberOfBytecodes, final SInteger numberOfLocals,
+        final SInteger maxNumStackElements, final int numberOfLiterals,
+        final List<SAbstractObject> literals, final int argumentIndex) {
+      super(nilObject, signature, numberOfBytecodes, numberOfLocals, maxNumStackElements,
+          numberOfLiterals, literals);
+      this.argumentIndex = argumentIndex;
+    }
+
+    @Override
+    protected SAbstractObject evaluate(final Frame frame, final int numberOfArguments) {
+      return getArgument(frame, numberOfArguments, argumentIndex);
+    }
+  }
+
+  /**
+   * A method with the body {@code ^literal}.
+   */
+  public static final class LiteralReturn extends STrivialMethod {
+    private final SAbstractObject literal;
+
+    public LiteralReturn(final SObject nilObject, final SSymbol signature,
+        final int numberOfBytecodes, final SInteger numberOfLocals,
+        final SInteger maxNumStackElements, final int numberOfLiterals,
+        final List<SAbstractObject> literals, final SAbstractObject literal) {
+      super(nilObject, signature, numberOfBytecodes, numberOfLocals, maxNumStackElements,
+          numberOfLiterals, literals);
+      this.literal = literal;
+    }
+
+    @Override
+    protected SAbstractObject evaluate(final Frame frame, final int numberOfArguments) {
+      return literal;
+    }
+  }
+}
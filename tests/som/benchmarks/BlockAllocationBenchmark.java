@@ -0,0 +1,45 @@
+package som.benchmarks;
+
+import som.vm.Universe;
+import som.vmobjects.SBlock;
+import som.vmobjects.SMethod;
+
+
+/**
+ * Measures the allocation of blocks of each arity, whose block class is
+ * resolved once per block method.
+ *
+ * <p>
+ * Run with:
+ * {@code java -cp build/classes som.benchmarks.BlockAllocationBenchmark <class path>}
+ */
+public class BlockAllocationBenchmark {
+
+  private static final int BLOCKS = 5_000_000;
+
+  /** Keeps the blocks alive, so that their allocation is not removed. */
+  private static final SBlock[] BLOCKS_KEPT = new SBlock[1024];
+
+  public static void main(final String[] args) throws Exception {
+    Universe universe = new Universe(true);
+    universe.setupClassPath(args.length > 0 ? args[0] : "Smalltalk");
+    // loads the system classes, and returns without running a program
+    universe.interpret("Object", "asString");
+
+    System.out.println("Block method   ns/block");
+    for (String signature : new String[] {"value", "value:", "value:with:"}) {
+      SMethod method = universe.newMethod(universe.symbolFor(signature), 0, 0,
+          universe.newInteger(0), universe.newInteger(0), null);
+      double nanos = Measurement.nanosPerRun(() -> allocate(universe, method));
+      System.out.println(String.format("%-14s %8.2f", signature, nanos / BLOCKS));
+    }
+  }
+
+  private static long allocate(final Universe universe, final SMethod method)
+      throws Exception {
+    for (int i = 0; i < BLOCKS; i++) {
+      BLOCKS_KEPT[i & (BLOCKS_KEPT.length - 1)] = universe.newBlock(method, null);
+    }
+    return BLOCKS_KEPT[0].getMethod().getNumberOfArguments();
+  }
+}
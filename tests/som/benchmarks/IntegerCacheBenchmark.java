@@ -0,0 +1,67 @@
+package som.benchmarks;
+
+import som.vmobjects.SInteger;
+
+
+/**
+ * Measures {@link SInteger#getInteger} for values inside and outside of the
+ * preallocated range, and the memory it retains for the values outside of
+ * it.
+ *
+ * <p>
+ * Run with:
+ * {@code java -cp build/classes som.benchmarks.IntegerCacheBenchmark}
+ */
+public class IntegerCacheBenchmark {
+
+  private static final int LOOKUPS = 5_000_000;
+
+  /** Number of distinct values produced by the wide workload. */
+  private static final int DISTINCT = 2_000_000;
+
+  public static void main(final String[] args) throws Exception {
+    System.out.println("Values         ns/lookup");
+    measure("small", 1000);
+    measure("wide", DISTINCT);
+
+    long before = usedMemory();
+    long sum = touch(DISTINCT);
+    long after = usedMemory();
+    System.out.println();
+    System.out.println("Retained heap after touching " + DISTINCT + " distinct values: "
+        + Math.max(0, after - before) / 1024 + " KB");
+    System.out.println("(checksum " + (Measurement.getChecksum() + sum) + ")");
+  }
+
+  private static void measure(final String values, final int range) throws Exception {
+    double nanos = Measurement.nanosPerRun(() -> lookUp(range));
+    System.out.println(String.format("%-14s %9.2f", values, nanos / LOOKUPS));
+  }
+
+  /** Mimics loop arithmetic: every result is boxed. */
+  private static long lookUp(final int range) {
+    long sum = 0;
+    SInteger acc = SInteger.getInteger(0);
+    for (int i = 0; i < LOOKUPS; i++) {
+      acc = SInteger.getInteger((acc.getEmbeddedInteger() + 7) % range);
+      sum += acc.getEmbeddedInteger();
+    }
+    return sum;
+  }
+
+  private static long touch(final int distinct) {
+    long sum = 0;
+    for (int i = 0; i < distinct; i++) {
+      sum += SInteger.getInteger(i).getEmbeddedInteger();
+    }
+    return sum;
+  }
+
+  private static long usedMemory() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+}
@@ -0,0 +1,37 @@
+package som.benchmarks;
+
+/**
+ * Times a workload once the JVM compiled it. The workloads return a
+ * checksum of their results, which is kept, so that their work cannot be
+ * removed.
+ */
+final class Measurement {
+
+  interface Workload {
+    long run() throws Exception;
+  }
+
+  private static final int WARMUP_RUNS   = 20;
+  private static final int MEASURED_RUNS = 10;
+
+  private static long checksum;
+
+  private Measurement() {}
+
+  /** Returns the average time of a run of the workload, in nanoseconds. */
+  static double nanosPerRun(final Workload workload) throws Exception {
+    for (int i = 0; i < WARMUP_RUNS; i++) {
+      checksum += workload.run();
+    }
+
+    long start = System.nanoTime();
+    for (int i = 0; i < MEASURED_RUNS; i++) {
+      checksum += workload.run();
+    }
+    return (double) (System.nanoTime() - start) / MEASURED_RUNS;
+  }
+
+  static long getChecksum() {
+    return checksum;
+  }
+}
@@ -0,0 +1,237 @@
+package som.compiler;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import som.tests.ClassFolder;
+import som.vm.Universe;
+import som.vmobjects.SAbstractObject;
+import som.vmobjects.SArray;
+import som.vmobjects.SBigInteger;
+import som.vmobjects.SClass;
+import som.vmobjects.SDouble;
+import som.vmobjects.SInteger;
+import som.vmobjects.SMethod;
+import som.vmobjects.SNumber;
+import som.vmobjects.SString;
+import som.vmobjects.SSymbol;
+
+
+/**
+ * Writes classes into a {@link ClassCache}, reads them back, and compares
+ * them with the classes the parser assembles from the same source. Entries
+ * whose source or super class changed must not be read.
+ */
+public class ClassCacheTests {
+
+  private static final String[] LITERALS = new String[] {
+      "Literals = (",
+      "  | field |",
+      "  numbers = ( ^ Array with: 42 with: 12345678901234567890123 with: 3.25 )",
+      "  negative = ( ^ Array with: -98765432109876543210 with: -0.5 )",
+      "  nested = ( ^ [ :x | [ :y | x + y + 1234567890123456789012 + 1.75 ] ] )",
+      "  strings = ( ^ #sym:bol: -> 'string' )",
+      "  field = ( ^ [ field ] )",
+      "  ----",
+      "  | classField |",
+      "  boot = ( ^ nil )",
+      "  classField = ( ^ [ :x | classField := x ] )",
+      ")"};
+
+  private static final String[] BASE = new String[] {
+      "Base = (",
+      "  | a |",
+      ")"};
+
+  private static final String[] BASE_WITH_NEW_FIELD = new String[] {
+      "Base = (",
+      "  | b a |",
+      ")"};
+
+  private static final String[] DERIVED = new String[] {
+      "Derived = Base (",
+      "  | c |",
+      "  a = ( ^ a )",
+      "  c = ( ^ c )",
+      "  ----",
+      "  boot = ( ^ nil )",
+      ")"};
+
+  @Rule
+  public ClassFolder classes = new ClassFolder();
+
+  private String classPath;
+  private String cacheDirectory;
+
+  @Before
+  public void setUp() throws IOException {
+    classPath = classes.getRoot().getPath();
+    cacheDirectory = classes.newFolder("cache").getPath();
+    classes.writeClass("Literals", LITERALS);
+    classes.writeClass("Base", BASE);
+    classes.writeClass("Derived", DERIVED);
+  }
+
+  /** Returns a universe in which the given class is loaded from source. */
+  private Universe newUniverse(final String className) throws ProgramDefinitionError {
+    Universe u = classes.newUniverse();
+    u.interpret(className, "boot");
+    return u;
+  }
+
+  /** Parses a class, stores it in the cache, and returns it as parsed. */
+  private SClass compileAndStore(final Universe u, final String name)
+      throws IOException, ProgramDefinitionError {
+    String sourceName = classPath + Universe.fileSeparator + name + ".som";
+    ClassGenerationContext cgc = new ClassGenerationContext(u);
+    try (FileReader reader = new FileReader(sourceName)) {
+      new Parser(reader, u, sourceName).classdef(cgc);
+    }
+
+    SClass result = cgc.assemble();
+    new ClassCache(u, cacheDirectory).store(sourceName, cgc);
+    return result;
+  }
+
+  private SClass load(final Universe u, final String name) throws ProgramDefinitionError {
+    return new ClassCache(u, cacheDirectory).load(classPath, name, null);
+  }
+
+  @Test
+  public void testReadClassEqualsParsedClass() throws Exception {
+    Universe u = newUniverse("Literals");
+    SClass expected = compileAndStore(u, "Literals");
+    SClass actual = load(u, "Literals");
+
+    assertNotNull(actual);
+    assertSameClass(expected, actual);
+    assertSameClass(expected.getSOMClass(), actual.getSOMClass());
+  }
+
+  @Test
+  public void testReadClassInLaterRun() throws Exception {
+    SClass expected = compileAndStore(newUniverse("Literals"), "Literals");
+    SClass actual = load(newUniverse("Literals"), "Literals");
+
+    assertNotNull(actual);
+    assertEquals(expected.getNumberOfInstanceInvokables(),
+        actual.getNumberOfInstanceInvokables());
+    assertSameMethod((SMethod) expected.getInstanceInvokable(2),
+        (SMethod) actual.getInstanceInvokable(2), false);
+  }
+
+  @Test
+  public void testChangedSourceIsNotRead() throws Exception {
+    Universe u = newUniverse("Literals");
+    compileAndStore(u, "Literals");
+
+    File source = classes.writeClass("Literals", replace(LITERALS, "3.25", "4.5"));
+    source.setLastModified(source.lastModified() + 2000);
+    assertNull(load(u, "Literals"));
+  }
+
+  @Test
+  public void testTouchedSourceIsRead() throws Exception {
+    Universe u = newUniverse("Literals");
+    compileAndStore(u, "Literals");
+
+    File source = classes.writeClass("Literals", LITERALS);
+    source.setLastModified(source.lastModified() + 2000);
+    assertNotNull(load(u, "Literals"));
+  }
+
+  @Test
+  public void testChangedSuperClassFieldIsNotRead() throws Exception {
+    compileAndStore(newUniverse("Derived"), "Derived");
+    assertNotNull(load(newUniverse("Derived"), "Derived"));
+
+    // the field accesses of Derived are compiled for the old index of a
+    classes.writeClass("Base", BASE_WITH_NEW_FIELD);
+    assertNull(load(newUniverse("Derived"), "Derived"));
+  }
+
+  private static String[] replace(final String[] lines, final String target,
+      final String replacement) {
+    String[] result = new String[lines.length];
+    for (int i = 0; i < lines.length; i++) {
+      result[i] = lines[i].replace(target, replacement);
+    }
+    return result;
+  }
+
+  private static void assertSameClass(final SClass expected, final SClass actual) {
+    assertSame(expected.getName(), actual.getName());
+    assertSameArray(expected.getInstanceFields(), actual.getInstanceFields());
+    assertEquals(expected.getNumberOfInstanceInvokables(),
+        actual.getNumberOfInstanceInvokables());
+    for (int i = 0; i < expected.getNumberOfInstanceInvokables(); i++) {
+      assertSameMethod((SMethod) expected.getInstanceInvokable(i),
+          (SMethod) actual.getInstanceInvokable(i), true);
+    }
+  }
+
+  private static void assertSameArray(final SArray expected, final SArray actual) {
+    assertEquals(expected.getNumberOfIndexableFields(),
+        actual.getNumberOfIndexableFields());
+    for (int i = 0; i < expected.getNumberOfIndexableFields(); i++) {
+      assertSame(expected.getIndexableField(i), actual.getIndexableField(i));
+    }
+  }
+
+  private static void assertSameMethod(final SMethod expected, final SMethod actual,
+      final boolean sameUniverse) {
+    assertEquals(expected.getSignature().getEmbeddedString(),
+        actual.getSignature().getEmbeddedString());
+    assertEquals(expected.getNumberOfLocals().getEmbeddedInteger(),
+        actual.getNumberOfLocals().getEmbeddedInteger());
+    assertEquals(expected.getMaximumNumberOfStackElements().getEmbeddedInteger(),
+        actual.getMaximumNumberOfStackElements().getEmbeddedInteger());
+    assertEquals(expected.getNumberOfArguments(), actual.getNumberOfArguments());
+    assertEquals(expected.isClean(), actual.isClean());
+    assertArrayEquals(expected.getBytecodes(), actual.getBytecodes());
+
+    SAbstractObject[] expectedLiterals = expected.getLiterals();
+    SAbstractObject[] actualLiterals = actual.getLiterals();
+    assertEquals(expectedLiterals.length, actualLiterals.length);
+    for (int i = 0; i < expectedLiterals.length; i++) {
+      assertSameLiteral(expectedLiterals[i], actualLiterals[i], sameUniverse);
+    }
+  }
+
+  private static void assertSameLiteral(final SAbstractObject expected,
+      final SAbstractObject actual, final boolean sameUniverse) {
+    assertEquals(expected.getClass(), actual.getClass());
+    if (expected instanceof SMethod) {
+      assertSameMethod((SMethod) expected, (SMethod) actual, sameUniverse);
+    } else if (expected instanceof SBigInteger) {
+      assertEquals(((SBigInteger) expected).getEmbeddedBiginteger(),
+          ((SBigInteger) actual).getEmbeddedBiginteger());
+    } else if (expected instanceof SDouble) {
+      assertEquals(Double.doubleToRawLongBits(((SDouble) expected).getEmbeddedDouble()),
+          Double.doubleToRawLongBits(((SDouble) actual).getEmbeddedDouble()));
+    } else if (expected instanceof SInteger) {
+      assertEquals(((SInteger) expected).getEmbeddedInteger(),
+          ((SInteger) actual).getEmbeddedInteger());
+    } else if (expected instanceof SString) {
+      assertEquals(((SString) expected).getEmbeddedString(),
+          ((SString) actual).getEmbeddedString());
+    }
+
+    // symbols and nil are unique within a universe
+    if (sameUniverse && (expected instanceof SSymbol || !(expected instanceof SString
+        || expected instanceof SNumber || expected instanceof SMethod))) {
+      assertSame(expected, actual);
+    }
+  }
+}
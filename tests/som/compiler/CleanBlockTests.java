@@ -0,0 +1,60 @@
+package som.compiler;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import som.tests.ClassFolder;
+import som.vmobjects.SSymbol;
+
+
+/**
+ * Blocks that do not refer to their context are allocated only once. These
+ * tests make sure that blocks which do refer to it, also indirectly, still
+ * see their own context.
+ */
+public class CleanBlockTests {
+
+  private static final String[] BLOCKS = new String[] {
+      "Blocks = (",
+      "  | field |",
+      "  unknownGlobal: name = ( ^ name )",
+      "  readUnknownGlobal = ( ^ [ NoSuchGlobalX ] value )",
+      "  readField: anObject = ( field := anObject. ^ [ field ] )",
+      "  ----",
+      "  testUnknownGlobal = ( ^ self new readUnknownGlobal )",
+      "  testField = (",
+      "    ^ ((self new readField: 3) value) + ((self new readField: 4) value) )",
+      "  testClean = ( | blocks | blocks := Array new: 2.",
+      "    1 to: 2 do: [ :i | blocks at: i put: [ :x | x + 1 ] ].",
+      "    ^ ((blocks at: 1) == (blocks at: 2)) ifTrue: [ 1 ] ifFalse: [ 0 ] )",
+      ")"};
+
+  @Rule
+  public ClassFolder classes = new ClassFolder();
+
+  @Before
+  public void setUp() throws IOException {
+    classes.writeClass("Blocks", BLOCKS);
+  }
+
+  @Test
+  public void testUnknownGlobalIsSentToSelf() throws ProgramDefinitionError {
+    SSymbol result = (SSymbol) classes.interpret("Blocks", "testUnknownGlobal");
+    assertEquals("NoSuchGlobalX", result.getEmbeddedString());
+  }
+
+  @Test
+  public void testFieldReadsOwnReceiver() throws ProgramDefinitionError {
+    assertEquals(7, classes.interpretInteger("Blocks", "testField"));
+  }
+
+  @Test
+  public void testCleanBlockIsAllocatedOnce() throws ProgramDefinitionError {
+    assertEquals(1, classes.interpretInteger("Blocks", "testClean"));
+  }
+}
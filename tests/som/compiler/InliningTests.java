@@ -0,0 +1,151 @@
+package som.compiler;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import som.tests.ClassFolder;
+
+
+/**
+ * Runs the control structures that the parser inlines, and compares their
+ * results with those of the sends they replace.
+ */
+@RunWith(Parameterized.class)
+public class InliningTests {
+
+  private static final String[] INLINING = new String[] {
+      "Inlining = (",
+      "  ----",
+      "  ifTrue = ( ^ true ifTrue: [ 1 ] )",
+      "  ifFalseNotTaken = ( ^ (true ifFalse: [ 1 ]) isNil ifTrue: [ 2 ] ifFalse: [ 3 ] )",
+      "  ifTrueIfFalse = ( ^ false ifTrue: [ 1 ] ifFalse: [ 2 ] )",
+      "  andOr = ( ^ ((true and: [ false ]) or: [ true ]) ifTrue: [ 1 ] ifFalse: [ 0 ] )",
+      "  blockVariable = ( | b | b := [ 4 ]. ^ true ifTrue: b )",
+      "  whileTrue = ( | i sum | i := 0. sum := 0.",
+      "    [ i < 10 ] whileTrue: [ i := i + 1. sum := sum + i ].",
+      "    ^ sum )",
+      "  toDo = ( | sum | sum := 0. 1 to: 10 do: [ :i | sum := sum + i ]. ^ sum )",
+      "  timesRepeat = ( | n | n := 0. 7 timesRepeat: [ n := n + 1 ]. ^ n )",
+      "  toDoAssigningArgument = ( | n | n := 0.",
+      "    1 to: 10 do: [ :i | n := n + 1. i := i + 1 ]. ^ n )",
+      "  toByDoAssigningArgument = ( | n | n := 0.",
+      "    1 to: 10 by: 1 do: [ :i | n := n + 1. i := i + 1 ]. ^ n )",
+      "  toDoCounter = ( | n | n := 0.",
+      "    (Counter new value: 1) to: 3 do: [ :c | n := n + c value ]. ^ n )",
+      "  downToDoCounter = ( | n | n := 0.",
+      "    (Counter new value: 3) downTo: 1 do: [ :c | n := n + c value ]. ^ n )",
+      "",
+      "  \"the inner blocks are left on the stack by the inlined or:, and",
+      "   are not block literals of ifTrue: and ifTrue:ifFalse:\"",
+      "  nestedBlockInOr = ( ^ true ifTrue: (false or: [ [ 5 ] ]) )",
+      "  nestedBlockInOrTaken = (",
+      "    ^ (true ifTrue: (true or: [ [ 5 ] ])) ifTrue: [ 6 ] ifFalse: [ 0 ] )",
+      "  nestedBlockInOrIfFalse = ( ^ true ifTrue: (false or: [ [ 7 ] ]) ifFalse: [ 0 ] )",
+      "  nestedBlockInAndWhile = ( | i | i := 0.",
+      "    [ i := i + 1. i < 3 ] whileTrue: (true and: [ [ i ] ]).",
+      "    ^ i )",
+      "",
+      "  \"conditions that are not booleans get #mustBeBoolean sent\"",
+      "  nonBooleanIfTrueIfFalse = (",
+      "    ^ (Flag new value: true) ifTrue: [ 1 ] ifFalse: [ 2 ] )",
+      "  nonBooleanIfFalse = ( ^ (Flag new value: false) ifFalse: [ 3 ] )",
+      "  nonBooleanAnd = (",
+      "    ^ ((Flag new value: true) and: [ false ]) ifTrue: [ 1 ] ifFalse: [ 2 ] )",
+      "  nonBooleanWhileTrue = ( | i | i := 0.",
+      "    [ Below new n: i below: 3 ] whileTrue: [ i := i + 1 ]. ^ i )",
+      "  nilIfTrue = ( | x | x := nil. x ifTrue: [ ^ 1 ]. ^ 2 )",
+      "  nilWhileTrue = ( | n | n := 0.",
+      "    [ n := n + 1. nil ] whileTrue: [ n := n + 10 ]. ^ n )",
+      ")"};
+
+  /** Conditions that are not booleans, one answering without a frame. */
+  private static final String[] FLAG = new String[] {
+      "Flag = (",
+      "  | value |",
+      "  value: aBoolean = ( value := aBoolean )",
+      "  mustBeBoolean = ( ^ value )",
+      ")"};
+
+  private static final String[] BELOW = new String[] {
+      "Below = (",
+      "  | n limit |",
+      "  n: anInteger below: otherInteger = ( n := anInteger. limit := otherInteger )",
+      "  mustBeBoolean = ( ^ n < limit )",
+      ")"};
+
+  /** A loop counter that is not a number. */
+  private static final String[] COUNTER = new String[] {
+      "Counter = (",
+      "  | value |",
+      "  value = ( ^ value )",
+      "  value: anInteger = ( value := anInteger )",
+      "  <= other = ( ^ value <= other )",
+      "  >= other = ( ^ value >= other )",
+      "  + other = ( ^ Counter new value: value + other )",
+      "  - other = ( ^ Counter new value: value - other )",
+      ")"};
+
+  @ClassRule
+  public static ClassFolder classes = new ClassFolder();
+
+  @BeforeClass
+  public static void writeTestClasses() throws IOException {
+    classes.writeClass("Inlining", INLINING);
+    classes.writeClass("Counter", COUNTER);
+    classes.writeClass("Flag", FLAG);
+    classes.writeClass("Below", BELOW);
+  }
+
+  @Parameters(name = "{0} [{index}]")
+  public static Iterable<Object[]> data() {
+    return Arrays.asList(new Object[][] {
+        {"ifTrue", 1},
+        {"ifFalseNotTaken", 2},
+        {"ifTrueIfFalse", 2},
+        {"andOr", 1},
+        {"blockVariable", 4},
+
+        {"whileTrue", 55},
+        {"toDo", 55},
+        {"timesRepeat", 7},
+        {"toDoAssigningArgument", 10},
+        {"toByDoAssigningArgument", 10},
+        {"toDoCounter", 6},
+        {"downToDoCounter", 6},
+
+        {"nestedBlockInOr", 5},
+        {"nestedBlockInOrTaken", 6},
+        {"nestedBlockInOrIfFalse", 7},
+        {"nestedBlockInAndWhile", 3},
+
+        {"nonBooleanIfTrueIfFalse", 1},
+        {"nonBooleanIfFalse", 3},
+        {"nonBooleanAnd", 2},
+        {"nonBooleanWhileTrue", 3},
+        {"nilIfTrue", 2},
+        {"nilWhileTrue", 1}
+    });
+  }
+
+  private final String selector;
+  private final long   expectedResult;
+
+  public InliningTests(final String selector, final long expectedResult) {
+    this.selector = selector;
+    this.expectedResult = expectedResult;
+  }
+
+  @Test
+  public void testInlinedControlStructure() throws ProgramDefinitionError {
+    assertEquals(expectedResult, classes.interpretInteger("Inlining", selector));
+  }
+}
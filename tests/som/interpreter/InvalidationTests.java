@@ -0,0 +1,134 @@
+package som.interpreter;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import som.compiler.ProgramDefinitionError;
+import som.tests.ClassFolder;
+
+
+/**
+ * Installs a method in a super class while a program runs, and checks that
+ * the sends which found the inherited method before find the new one.
+ *
+ * <p>
+ * Root defines #probe, which Leaf and its siblings inherit through Middle.
+ * The method installed in Middle comes from Donor. The methods installed
+ * in Integer and Double come from Arithmetic, and replace the ones that the
+ * specialised sends compute directly.
+ */
+public class InvalidationTests {
+
+  private static final int NUMBER_OF_SIBLINGS = InlineCache.DEGREE + 1;
+
+  private static final String[] INVALIDATION = new String[] {
+      "Invalidation = (",
+      "  install: selector from: donor in: aClass = primitive",
+      "  versionOf: aClass = primitive",
+      "  probe: anObject = ( ^ anObject probe )",
+      "  ----",
+      "  testWarmInlineCache = ( | tool leaf before |",
+      "    tool := self new. leaf := Leaf new. before := 0.",
+      "    1 to: 10 do: [ :i | before := before + (tool probe: leaf) ].",
+      "    tool install: #probe from: Donor in: Middle.",
+      "    ^ before + (tool probe: leaf) )",
+      "  testMegamorphicSite = ( | tool siblings sum |",
+      "    tool := self new. siblings := Siblings siblings.",
+      "    siblings do: [ :each | tool probe: each ].",
+      "    tool install: #probe from: Donor in: Middle.",
+      "    sum := 0.",
+      "    siblings do: [ :each | sum := sum + (tool probe: each) ].",
+      "    ^ sum )",
+      "  testSuperSend = ( | tool leaf before |",
+      "    tool := self new. leaf := SubLeaf new.",
+      "    before := leaf probeSuper + leaf probeSuper.",
+      "    tool install: #probe from: Donor in: Middle.",
+      "    ^ before * 10 + leaf probeSuper )",
+      "  testVersions = ( | tool sibling leaf |",
+      "    tool := self new.",
+      "    sibling := tool versionOf: Sibling. leaf := tool versionOf: SubLeaf.",
+      "    tool install: #probe from: Donor in: Middle.",
+      "    ^ ((tool versionOf: Sibling) = sibling",
+      "        and: [ (tool versionOf: SubLeaf) ~= leaf ])",
+      "      ifTrue: [ 1 ] ifFalse: [ 0 ] )",
+      "",
+      "  \"the counted loop adds with the installed method, and ends early\"",
+      "  testIntegerMethod = ( | tool before after |",
+      "    tool := self new. before := 0. after := 0.",
+      "    1 to: 10 do: [ :i | before := before + i ].",
+      "    tool install: #+ from: Arithmetic in: Integer.",
+      "    1 to: 10 do: [ :i | after := after + i ].",
+      "    ^ before - after )",
+      "  testDoubleMethod = ( | tool before |",
+      "    tool := self new. before := 2.5 > 1.5.",
+      "    tool install: #< from: Arithmetic in: Double.",
+      "    ^ (before and: [ (2.5 > 1.5) not ]) ifTrue: [ 1 ] ifFalse: [ 0 ] )",
+      ")"};
+
+  @Rule
+  public ClassFolder classes = new ClassFolder();
+
+  @Before
+  public void setUp() throws IOException {
+    classes.writeClass("Invalidation", INVALIDATION);
+    classes.writeClass("Root", "Root = ( probe = ( ^ 1 ) )");
+    classes.writeClass("Middle", "Middle = Root ()");
+    classes.writeClass("Leaf", "Leaf = Middle ()");
+    classes.writeClass("SubLeaf", "SubLeaf = Leaf ( probeSuper = ( ^ super probe ) )");
+    classes.writeClass("Sibling", "Sibling = Root ()");
+    classes.writeClass("Donor", "Donor = ( probe = ( ^ 2 ) )");
+    classes.writeClass("Arithmetic",
+        "Arithmetic = ( + other = ( ^ 42 ) < other = ( ^ true ) )");
+
+    // enough receiver classes for a send site to become megamorphic
+    StringBuilder siblings = new StringBuilder(
+        "Siblings = ( ---- siblings = ( | result | result := Array new: "
+            + NUMBER_OF_SIBLINGS + ".");
+    for (int i = 1; i <= NUMBER_OF_SIBLINGS; i++) {
+      classes.writeClass("Leaf" + i, "Leaf" + i + " = Middle ()");
+      siblings.append(" result at: " + i + " put: Leaf" + i + " new.");
+    }
+    siblings.append(" ^ result ) )");
+    classes.writeClass("Siblings", siblings.toString());
+  }
+
+  private long run(final String selector) throws ProgramDefinitionError {
+    return classes.interpretInteger("Invalidation", selector);
+  }
+
+  @Test
+  public void testWarmInlineCache() throws ProgramDefinitionError {
+    assertEquals(12, run("testWarmInlineCache"));
+  }
+
+  @Test
+  public void testMegamorphicSite() throws ProgramDefinitionError {
+    assertEquals(2 * NUMBER_OF_SIBLINGS, run("testMegamorphicSite"));
+  }
+
+  @Test
+  public void testSuperSend() throws ProgramDefinitionError {
+    assertEquals(22, run("testSuperSend"));
+  }
+
+  @Test
+  public void testUnrelatedClassKeepsVersion() throws ProgramDefinitionError {
+    assertEquals(1, run("testVersions"));
+  }
+
+  @Test
+  public void testSpecialisedSendFindsIntegerMethod() throws ProgramDefinitionError {
+    assertEquals(55 - 42, run("testIntegerMethod"));
+  }
+
+  @Test
+  public void testSpecialisedSendFindsDoubleMethod() throws ProgramDefinitionError {
+    // Double defines > based on the installed <
+    assertEquals(1, run("testDoubleMethod"));
+  }
+}
@@ -0,0 +1,131 @@
+package som.interpreter;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import som.compiler.ProgramDefinitionError;
+import som.tests.ClassFolder;
+import som.vm.Universe;
+import som.vmobjects.SString;
+
+
+/**
+ * Runs numeric code with and without typed slots. Unboxed integers and
+ * doubles need to overflow like boxed ones, and need to be boxed with
+ * their value once they escape the frame.
+ */
+@RunWith(Parameterized.class)
+public class TypedSlotsTests {
+
+  private static final String[] NUMBERS = new String[] {
+      "Numbers = (",
+      "  | field |",
+      "  field = ( ^ field )",
+      "  field: anObject = ( field := anObject )",
+      "  ----",
+      "  twice: aNumber = ( ^ aNumber + aNumber )",
+      "",
+      "  addOverflow = ( | a | a := 4611686018427387904. ^ (a + a) asString )",
+      "  subtractOverflow = ( | a | a := -4611686018427387904.",
+      "    ^ (a + a - 1) asString )",
+      "  multiplyOverflow = ( | a | a := 4611686018427387904. ^ (a * 4) asString )",
+      "  localOverflow = ( | i | i := 9223372036854775806 + 0.",
+      "    i := i + 1. i := i + 1. ^ i asString )",
+      "",
+      "  \"the counters are incremented past the limit before the loops end\"",
+      "  incrementOverflow = ( | n |",
+      "    n := 0.",
+      "    (9223372036854775805 + 0) to: 9223372036854775807 do: [ :i |",
+      "      i < 0 ifTrue: [ ^ 'wrapped' ].",
+      "      n := n + 1 ].",
+      "    ^ n asString )",
+      "  decrementOverflow = ( | n |",
+      "    n := 0.",
+      "    (-9223372036854775806 - 0) downTo: -9223372036854775807 - 1 do: [ :i |",
+      "      i > 0 ifTrue: [ ^ 'wrapped' ].",
+      "      n := n + 1 ].",
+      "    ^ n asString )",
+      "",
+      "  mixed = ( | s | s := 0.",
+      "    1 to: 10 do: [ :k | s := s + k. s := s + 0.5 ]. ^ s asString )",
+      "  changingType = ( | x | x := 1 + 2. x := 'a' , x asString. ^ x )",
+      "  identical = ( | x y | x := 2.5 * 2. y := 1000000 * 3.",
+      "    ^ ((x == 5.0) and: [ y == 3000000 ]) asString )",
+      "",
+      "  \"each use boxes the double, which must keep its value\"",
+      "  escapingDouble = ( | d a o b |",
+      "    d := 1.5. d := d * 2.",
+      "    a := Array with: d with: d.",
+      "    o := self new. o field: d.",
+      "    b := [ d ].",
+      "    ^ ((a at: 1) + (a at: 2) + o field + b value + (self twice: d)) asString )",
+      "  blockWritesOuterLocal = ( | n |",
+      "    n := 0. n := n + 1.",
+      "    (Array new: 5) do: [ :e | n := n + 2 ].",
+      "    n := n * 3. ^ n asString )",
+      "  argumentArithmetic = ( ^ (self twice: 4611686018427387904) asString )",
+      ")"};
+
+  @ClassRule
+  public static ClassFolder classes = new ClassFolder();
+
+  @BeforeClass
+  public static void writeTestClasses() throws IOException {
+    classes.writeClass("Numbers", NUMBERS);
+  }
+
+  @Parameters(name = "{0} [{index}]")
+  public static Iterable<Object[]> data() {
+    return Arrays.asList(new Object[][] {
+        {"addOverflow", "9223372036854775808"},
+        {"subtractOverflow", "-9223372036854775809"},
+        {"multiplyOverflow", "18446744073709551616"},
+        {"localOverflow", "9223372036854775808"},
+        {"incrementOverflow", "3"},
+        {"decrementOverflow", "3"},
+
+        {"mixed", "60.0"},
+        {"changingType", "a3"},
+        {"identical", "true"},
+
+        {"escapingDouble", "18.0"},
+        {"blockWritesOuterLocal", "33"},
+        {"argumentArithmetic", "9223372036854775808"}
+    });
+  }
+
+  private final String selector;
+  private final String expectedResult;
+
+  public TypedSlotsTests(final String selector, final String expectedResult) {
+    this.selector = selector;
+    this.expectedResult = expectedResult;
+  }
+
+  private String interpret(final boolean typedSlots) throws ProgramDefinitionError {
+    Universe universe = classes.newUniverse();
+    if (typedSlots) {
+      universe.getInterpreter().useTypedSlots();
+    }
+    return ((SString) universe.interpret("Numbers", selector)).getEmbeddedString();
+  }
+
+  @Test
+  public void testBoxedSlots() throws ProgramDefinitionError {
+    assertEquals(expectedResult, interpret(false));
+  }
+
+  @Test
+  public void testTypedSlots() throws ProgramDefinitionError {
+    assertEquals(expectedResult, interpret(true));
+  }
+}
@@ -0,0 +1,45 @@
+package som.primitives;
+
+import som.interpreter.Frame;
+import som.interpreter.Interpreter;
+import som.vm.Universe;
+import som.vmobjects.SClass;
+import som.vmobjects.SPrimitive;
+import som.vmobjects.SSymbol;
+
+
+/**
+ * The primitives of the Invalidation class used by
+ * {@link som.interpreter.InvalidationTests}, which install methods while a
+ * program runs.
+ */
+public class InvalidationPrimitives extends Primitives {
+
+  public InvalidationPrimitives(final Universe universe) {
+    super(universe);
+  }
+
+  @Override
+  public void installPrimitives() {
+    installInstancePrimitive(new SPrimitive("install:from:in:", universe) {
+
+      @Override
+      public void invoke(final Frame frame, final Interpreter interpreter) {
+        SClass target = (SClass) frame.pop();
+        SClass donor = (SClass) frame.pop();
+        SSymbol selector = (SSymbol) frame.pop();
+        target.addInstanceInvokable(donor.lookupInvokable(selector));
+      }
+    });
+
+    installInstancePrimitive(new SPrimitive("versionOf:", universe) {
+
+      @Override
+      public void invoke(final Frame frame, final Interpreter interpreter) {
+        SClass clazz = (SClass) frame.pop();
+        frame.pop();
+        frame.push(universe.newInteger(clazz.getVersion()));
+      }
+    });
+  }
+}
@@ -0,0 +1,54 @@
+package som.tests;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.rules.TemporaryFolder;
+
+import som.compiler.ProgramDefinitionError;
+import som.vm.Universe;
+import som.vmobjects.SAbstractObject;
+import som.vmobjects.SInteger;
+
+
+/**
+ * A temporary folder for the classes that a test writes, which comes after
+ * the Smalltalk library on the class path of the universes it creates.
+ *
+ * <p>
+ * A universe bootstraps its object system whenever it interprets a method,
+ * so each method is interpreted in a universe of its own.
+ */
+public class ClassFolder extends TemporaryFolder {
+
+  /** Writes the source of a class, one line per string. */
+  public File writeClass(final String name, final String... lines) throws IOException {
+    File source = new File(getRoot(), name + ".som");
+    Files.write(source.toPath(),
+        String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+    return source;
+  }
+
+  public String getClassPath() {
+    return "Smalltalk" + Universe.pathSeparator + getRoot().getPath();
+  }
+
+  public Universe newUniverse() {
+    Universe universe = new Universe(true);
+    universe.setupClassPath(getClassPath());
+    return universe;
+  }
+
+  /** Sends the selector to the class with the given name. */
+  public SAbstractObject interpret(final String className, final String selector)
+      throws ProgramDefinitionError {
+    return newUniverse().interpret(className, selector);
+  }
+
+  public long interpretInteger(final String className, final String selector)
+      throws ProgramDefinitionError {
+    return ((SInteger) interpret(className, selector)).getEmbeddedInteger();
+  }
+}
@@ -0,0 +1,124 @@
+package som.vm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import som.compiler.ProgramDefinitionError;
+import som.tests.ClassFolder;
+import som.vmobjects.SInteger;
+
+
+/**
+ * Starts universes from an image of the bootstrapped classes. The classes
+ * are bootstrapped from a copy of the Smalltalk library, so that the tests
+ * can change them.
+ */
+public class UniverseImageTests {
+
+  private static final String[] PROGRAM = new String[] {
+      "Program = (",
+      "  run: arguments = ( ^ 3 imageValue )",
+      ")"};
+
+  // each minute back in time makes sure that the file times differ
+  private static final long MINUTE = 60 * 1000;
+
+  @Rule
+  public ClassFolder classes = new ClassFolder();
+
+  private File   integerSource;
+  private String integerClass;
+  private File   image;
+  private String classPath;
+
+  @Before
+  public void setUp() throws IOException {
+    File library = classes.newFolder("Smalltalk");
+    try (DirectoryStream<Path> sources =
+        Files.newDirectoryStream(Paths.get("Smalltalk"), "*.som")) {
+      for (Path source : sources) {
+        Files.copy(source, library.toPath().resolve(source.getFileName().toString()));
+      }
+    }
+    integerSource = new File(library, "Integer.som");
+    integerClass = new String(Files.readAllBytes(integerSource.toPath()),
+        StandardCharsets.UTF_8);
+    setImageValue("1");
+
+    classes.writeClass("Program", PROGRAM);
+
+    // the copy of the library takes the place of the original one
+    image = new File(classes.getRoot(), "universe.somi");
+    classPath = library.getPath() + Universe.pathSeparator + classes.getRoot().getPath();
+  }
+
+  /** Gives Integer a method that answers the given value. */
+  private void setImageValue(final String value) throws IOException {
+    String source = integerClass.replaceFirst("^Integer = \\(",
+        "Integer = (\n    imageValue = ( ^ " + value + " )");
+    Files.write(integerSource.toPath(), source.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private long run() throws ProgramDefinitionError {
+    Universe u = new Universe(true);
+    String[] args = {"-image", image.getPath(), "-cp", classPath, "Program"};
+    return ((SInteger) u.interpret(args)).getEmbeddedInteger();
+  }
+
+  /** Runs the program, and tells whether it wrote the image. */
+  private boolean runWritesImage(final long expectedResult)
+      throws ProgramDefinitionError {
+    long lastModified = image.lastModified() - MINUTE;
+    image.setLastModified(lastModified);
+    assertEquals(expectedResult, run());
+    return image.lastModified() != lastModified;
+  }
+
+  @Test
+  public void testMissingImageIsWritten() throws ProgramDefinitionError {
+    assertEquals(1, run());
+    assertTrue(image.isFile());
+  }
+
+  @Test
+  public void testRestoreFromImage() throws ProgramDefinitionError, IOException {
+    assertEquals(1, run());
+    assertFalse(runWritesImage(1));
+
+    // a source of the same length and time is taken to be unchanged, so the
+    // old method can only come from the image
+    long lastModified = integerSource.lastModified();
+    setImageValue("7");
+    integerSource.setLastModified(lastModified);
+    assertFalse(runWritesImage(1));
+  }
+
+  @Test
+  public void testChangedBootstrapClassRewritesImage()
+      throws ProgramDefinitionError, IOException {
+    assertEquals(1, run());
+    byte[] oldImage = Files.readAllBytes(image.toPath());
+
+    setImageValue("2");
+    integerSource.setLastModified(integerSource.lastModified() + MINUTE);
+    assertTrue(runWritesImage(2));
+    assertFalse(Arrays.equals(oldImage, Files.readAllBytes(image.toPath())));
+
+    // the new image holds the changed class
+    assertFalse(runWritesImage(2));
+  }
+}
@@ -0,0 +1,169 @@
+package som.vmobjects;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import som.compiler.ProgramDefinitionError;
+import som.tests.ClassFolder;
+import som.vm.Universe;
+
+
+/**
+ * Arrays store integers and doubles unboxed, and switch their storage when
+ * other values are stored. These tests read the elements back after each
+ * kind of switch.
+ */
+public class ArrayStorageTests {
+
+  private static final String[] ARRAYS = new String[] {
+      "Arrays = (",
+      "  ----",
+      "  allNil = ( | a | a := Array new: 3. a at: 2 put: nil. ^ a )",
+      "  integersWithHoles = ( | a | a := Array new: 4.",
+      "    a at: 1 put: 3. a at: 3 put: 100000. ^ a )",
+      "  integerSetToNil = ( | a | a := Array new: 2.",
+      "    a at: 1 put: 5. a at: 2 put: 6. a at: 1 put: nil. ^ a )",
+      "  nilSetToInteger = ( | a | a := Array new: 2.",
+      "    a at: 1 put: 5. a at: 2 put: nil. a at: 2 put: 6. ^ a )",
+      "  doublesWithHoles = ( | a | a := Array new: 3.",
+      "    a at: 2 put: 2.5. a at: 3 put: -0.5. a at: 3 put: nil. ^ a )",
+      "  integerThenDouble = ( | a | a := Array new: 3.",
+      "    a at: 1 put: 3. a at: 2 put: 2.5. ^ a )",
+      "  doubleThenInteger = ( | a | a := Array new: 3.",
+      "    a at: 1 put: 2.5. a at: 3 put: 3. ^ a )",
+      "  integerThenObject = ( | a | a := Array new: 3.",
+      "    a at: 1 put: 7. a at: 2 put: #sym. a at: 2 put: 8. ^ a )",
+      "  copyWithHoles = ( | a | a := Array new: 3.",
+      "    a at: 3 put: 1.5. ^ a copy )",
+      "",
+      "  \"elements are boxed again whenever they are read\"",
+      "  doubleReadBack = ( | a | a := Array new: 1. a at: 1 put: 2.5.",
+      "    ^ (a at: 1) == (a at: 1) and: [ (a at: 1) == 2.5 and: [",
+      "      (a at: 1) hashcode = (a at: 1) hashcode ] ] )",
+      "  integerReadBack = ( | a | a := Array new: 1.",
+      "    a at: 1 put: 12345678901.",
+      "    ^ (a at: 1) == (a at: 1) and: [ (a at: 1) == 12345678901 and: [",
+      "      (a at: 1) hashcode = (a at: 1) hashcode ] ] )",
+      ")"};
+
+  @Rule
+  public ClassFolder classes = new ClassFolder();
+
+  private Universe universe;
+
+  @Before
+  public void setUp() throws IOException {
+    classes.writeClass("Arrays", ARRAYS);
+    universe = classes.newUniverse();
+  }
+
+  private SArray interpret(final String selector) throws ProgramDefinitionError {
+    return (SArray) universe.interpret("Arrays", selector);
+  }
+
+  private void assertNil(final SArray array, final int index) {
+    assertSame(universe.nilObject, array.getIndexableField(index));
+  }
+
+  private static void assertInteger(final long expected, final SArray array,
+      final int index) {
+    assertEquals(expected,
+        ((SInteger) array.getIndexableField(index)).getEmbeddedInteger());
+  }
+
+  private static void assertDouble(final double expected, final SArray array,
+      final int index) {
+    assertEquals(expected,
+        ((SDouble) array.getIndexableField(index)).getEmbeddedDouble(), 0.0);
+  }
+
+  @Test
+  public void testAllNil() throws ProgramDefinitionError {
+    SArray a = interpret("allNil");
+    assertEquals(3, a.getNumberOfIndexableFields());
+    assertNil(a, 0);
+    assertNil(a, 1);
+    assertNil(a, 2);
+  }
+
+  @Test
+  public void testIntegersWithHoles() throws ProgramDefinitionError {
+    SArray a = interpret("integersWithHoles");
+    assertInteger(3, a, 0);
+    assertNil(a, 1);
+    assertInteger(100000, a, 2);
+    assertNil(a, 3);
+  }
+
+  @Test
+  public void testIntegerSetToNil() throws ProgramDefinitionError {
+    SArray a = interpret("integerSetToNil");
+    assertNil(a, 0);
+    assertInteger(6, a, 1);
+  }
+
+  @Test
+  public void testNilSetToInteger() throws ProgramDefinitionError {
+    SArray a = interpret("nilSetToInteger");
+    assertInteger(5, a, 0);
+    assertInteger(6, a, 1);
+  }
+
+  @Test
+  public void testDoublesWithHoles() throws ProgramDefinitionError {
+    SArray a = interpret("doublesWithHoles");
+    assertNil(a, 0);
+    assertDouble(2.5, a, 1);
+    assertNil(a, 2);
+  }
+
+  @Test
+  public void testIntegerThenDouble() throws ProgramDefinitionError {
+    SArray a = interpret("integerThenDouble");
+    assertInteger(3, a, 0);
+    assertDouble(2.5, a, 1);
+    assertNil(a, 2);
+  }
+
+  @Test
+  public void testDoubleThenInteger() throws ProgramDefinitionError {
+    SArray a = interpret("doubleThenInteger");
+    assertDouble(2.5, a, 0);
+    assertNil(a, 1);
+    assertInteger(3, a, 2);
+  }
+
+  @Test
+  public void testIntegerThenObject() throws ProgramDefinitionError {
+    SArray a = interpret("integerThenObject");
+    assertInteger(7, a, 0);
+    assertInteger(8, a, 1);
+    assertNil(a, 2);
+  }
+
+  @Test
+  public void testCopyWithHoles() throws ProgramDefinitionError {
+    SArray a = interpret("copyWithHoles");
+    assertNil(a, 0);
+    assertNil(a, 1);
+    assertDouble(1.5, a, 2);
+  }
+
+  @Test
+  public void testDoubleReadBackIsIdentical() throws ProgramDefinitionError {
+    SAbstractObject result = universe.interpret("Arrays", "doubleReadBack");
+    assertSame(universe.trueObject, result);
+  }
+
+  @Test
+  public void testIntegerReadBackIsIdentical() throws ProgramDefinitionError {
+    SAbstractObject result = universe.interpret("Arrays", "integerReadBack");
+    assertSame(universe.trueObject, result);
+  }
+}
@@ -0,0 +1,151 @@
+package som.vmobjects;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import som.compiler.ProgramDefinitionError;
+import som.tests.ClassFolder;
+import som.vm.Universe;
+
+
+/**
+ * Concatenations and substrings are flattened only once their characters
+ * are needed. These tests use them before and after they are flattened.
+ */
+public class StringConcatenationTests {
+
+  private static final String[] STRINGS = new String[] {
+      "Strings = (",
+      "  ----",
+      "  concatenationLength = ( ^ ('abc' , 'de') length )",
+      "  viewLength = ( ^ ('abcdef' substringFrom: 2 to: 4) length )",
+      "  concatenationsEqual = ( ^ ('ab' , 'cd') = ('a' , 'bcd') )",
+      "  concatenationsDiffer = ( ^ ('ab' , 'cd') = ('ab' , 'ce') )",
+      "  viewEqualsFlat = ( ^ ('xhellox' substringFrom: 2 to: 6) = 'hello' )",
+      "  concatenationHashcode = (",
+      "    ^ ('ab' , 'cd') hashcode = 'abcd' hashcode )",
+      "  viewHashcode = (",
+      "    ^ ('xhellox' substringFrom: 2 to: 6) hashcode = 'hello' hashcode )",
+      "  substringOfConcatenation = (",
+      "    ^ ('hello' , ' ' , 'world') substringFrom: 3 to: 8 )",
+      "  substringOfView = (",
+      "    ^ ('hello world' substringFrom: 2 to: 10) substringFrom: 2 to: 4 )",
+      "  substringBeyondView = (",
+      "    ^ ('abcdef' substringFrom: 2 to: 3) substringFrom: 1 to: 4 )",
+      "  concatenationOfViews = (",
+      "    ^ ('hello' substringFrom: 1 to: 2) , ('hello' substringFrom: 4 to: 5) )",
+      "  concatenationUsedTwice = ( | s |",
+      "    s := 'ab' , 'cd'.",
+      "    ^ (s , s) , (s substringFrom: 2 to: 3) )",
+      "  deepConcatenation = ( | s |",
+      "    s := ''.",
+      "    1 to: 100000 do: [ :i | s := s , 'ab' ].",
+      "    ^ s )",
+      "  deepConcatenationOnRight = ( | s |",
+      "    s := ''.",
+      "    1 to: 100000 do: [ :i | s := 'ab' , s ].",
+      "    ^ s )",
+      ")"};
+
+  @Rule
+  public ClassFolder classes = new ClassFolder();
+
+  private Universe universe;
+
+  @Before
+  public void setUp() throws IOException {
+    classes.writeClass("Strings", STRINGS);
+    universe = classes.newUniverse();
+  }
+
+  private String interpretString(final String selector) throws ProgramDefinitionError {
+    return ((SString) universe.interpret("Strings", selector)).getEmbeddedString();
+  }
+
+  private void assertTrue(final String selector) throws ProgramDefinitionError {
+    SAbstractObject result = universe.interpret("Strings", selector);
+    assertSame(universe.trueObject, result);
+  }
+
+  private static String repeat(final String string, final int times) {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < times; i++) {
+      builder.append(string);
+    }
+    return builder.toString();
+  }
+
+  @Test
+  public void testLength() throws ProgramDefinitionError {
+    assertEquals(5, classes.interpretInteger("Strings", "concatenationLength"));
+    assertEquals(3, classes.interpretInteger("Strings", "viewLength"));
+  }
+
+  @Test
+  public void testConcatenationsEqual() throws ProgramDefinitionError {
+    assertTrue("concatenationsEqual");
+  }
+
+  @Test
+  public void testConcatenationsDiffer() throws ProgramDefinitionError {
+    SAbstractObject result = universe.interpret("Strings", "concatenationsDiffer");
+    assertSame(universe.falseObject, result);
+  }
+
+  @Test
+  public void testViewEqualsFlatString() throws ProgramDefinitionError {
+    assertTrue("viewEqualsFlat");
+  }
+
+  @Test
+  public void testConcatenationHashcode() throws ProgramDefinitionError {
+    assertTrue("concatenationHashcode");
+  }
+
+  @Test
+  public void testViewHashcode() throws ProgramDefinitionError {
+    assertTrue("viewHashcode");
+  }
+
+  @Test
+  public void testSubstringOfConcatenation() throws ProgramDefinitionError {
+    assertEquals("llo wo", interpretString("substringOfConcatenation"));
+  }
+
+  @Test
+  public void testSubstringOfView() throws ProgramDefinitionError {
+    assertEquals("llo", interpretString("substringOfView"));
+  }
+
+  @Test
+  public void testSubstringBeyondView() throws ProgramDefinitionError {
+    // the characters after the view are not part of it
+    assertEquals("Error - index out of bounds", interpretString("substringBeyondView"));
+  }
+
+  @Test
+  public void testConcatenationOfViews() throws ProgramDefinitionError {
+    assertEquals("helo", interpretString("concatenationOfViews"));
+  }
+
+  @Test
+  public void testConcatenationUsedTwice() throws ProgramDefinitionError {
+    assertEquals("abcdabcdbc", interpretString("concatenationUsedTwice"));
+  }
+
+  @Test
+  public void testDeepConcatenation() throws ProgramDefinitionError {
+    assertEquals(repeat("ab", 100000), interpretString("deepConcatenation"));
+  }
+
+  @Test
+  public void testDeepConcatenationOnRight() throws ProgramDefinitionError {
+    assertEquals(repeat("ab", 100000), interpretString("deepConcatenationOnRight"));
+  }
+}